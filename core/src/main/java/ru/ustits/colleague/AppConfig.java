@@ -1,28 +1,41 @@
 package ru.ustits.colleague;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.logging.LoggingMeterRegistry;
 import org.hibernate.jpa.HibernatePersistenceProvider;
-import org.postgresql.ds.PGSimpleDataSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.telegram.telegrambots.bots.commandbot.commands.BotCommand;
+import ru.ustits.colleague.cache.SpecCacheManager;
 import ru.ustits.colleague.commands.AdminAwareCommand;
+import ru.ustits.colleague.migrations.MigrationRunner;
+import ru.ustits.colleague.outbound.OutboundDispatcher;
+import ru.ustits.colleague.services.MessageBatchHandler;
+import ru.ustits.colleague.services.MessageReader;
+import ru.ustits.colleague.services.MessageWriter;
 
 import javax.sql.DataSource;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -44,22 +57,49 @@ public class AppConfig {
   private ResourceLoader loader;
 
   @Bean
+  @DependsOn("migrationRunner")
   public JdbcTemplate sql(final DataSource dataSource) {
     return new JdbcTemplate(dataSource);
   }
 
   @Bean
-  public DataSource dataSource() {
-    final PGSimpleDataSource dataSource = new PGSimpleDataSource();
-    dataSource.setServerName(env.getRequiredProperty("db.url"));
-    dataSource.setDatabaseName(env.getRequiredProperty("db.name"));
-    dataSource.setUser(env.getRequiredProperty("db.user"));
-    dataSource.setPassword(env.getRequiredProperty("db.password"));
-    dataSource.setPortNumber(Integer.valueOf(env.getRequiredProperty("db.port")));
-    return dataSource;
+  @DependsOn("migrationRunner")
+  public TransactionTemplate jdbcTransactions(final DataSource dataSource) {
+    return new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+  }
+
+  @Bean(destroyMethod = "close")
+  public DataSource dataSource(final MeterRegistry meterRegistry) {
+    final HikariConfig config = new HikariConfig();
+    config.setPoolName("colleague");
+    config.setJdbcUrl(String.format("jdbc:postgresql://%s:%s/%s",
+            env.getRequiredProperty("db.url"),
+            env.getRequiredProperty("db.port"),
+            env.getRequiredProperty("db.name")));
+    config.setUsername(env.getRequiredProperty("db.user"));
+    config.setPassword(env.getRequiredProperty("db.password"));
+    config.setMaximumPoolSize(env.getProperty("db.pool.size.max", Integer.class, 10));
+    config.setMinimumIdle(env.getProperty("db.pool.size.min", Integer.class, 2));
+    config.setConnectionTimeout(env.getProperty("db.pool.timeout.connection", Long.class, 30_000L));
+    config.setValidationTimeout(env.getProperty("db.pool.timeout.validation", Long.class, 5_000L));
+    config.setIdleTimeout(env.getProperty("db.pool.timeout.idle", Long.class, 600_000L));
+    config.setMaxLifetime(env.getProperty("db.pool.lifetime.max", Long.class, 1_800_000L));
+    config.setLeakDetectionThreshold(env.getProperty("db.pool.leak.threshold", Long.class, 60_000L));
+    config.addDataSourceProperty("prepareThreshold",
+            env.getProperty("db.statements.prepare.threshold", Integer.class, 5));
+    config.addDataSourceProperty("preparedStatementCacheQueries",
+            env.getProperty("db.statements.cache.size", Integer.class, 256));
+    config.setMetricRegistry(meterRegistry);
+    return new HikariDataSource(config);
+  }
+
+  @Bean(initMethod = "migrate")
+  public MigrationRunner migrationRunner(final DataSource dataSource) {
+    return new MigrationRunner(dataSource);
   }
 
   @Bean
+  @DependsOn("migrationRunner")
   public LocalContainerEntityManagerFactoryBean entityManagerFactory(final DataSource dataSource) {
     final LocalContainerEntityManagerFactoryBean manager = new LocalContainerEntityManagerFactoryBean();
     manager.setDataSource(dataSource);
@@ -84,8 +124,62 @@ public class AppConfig {
   }
 
   @Bean
-  public CacheManager cacheManager() {
-    return new ConcurrentMapCacheManager();
+  public CacheManager cacheManager(final MeterRegistry meterRegistry) {
+    return new SpecCacheManager(env, meterRegistry);
+  }
+
+  @Bean(destroyMethod = "close")
+  public MeterRegistry meterRegistry() {
+    return new LoggingMeterRegistry(key -> env.getProperty("metrics." + key), Clock.SYSTEM);
+  }
+
+  @Bean
+  public MessageWriter messageWriter(final JdbcTemplate sql, final TransactionTemplate jdbcTransactions,
+                                     final List<MessageBatchHandler> handlers,
+                                     final MeterRegistry meterRegistry) {
+    return new MessageWriter(sql, jdbcTransactions, handlers, meterRegistry,
+            env.getProperty("messages.queue.capacity", Integer.class, 10_000),
+            env.getProperty("messages.batch.size", Integer.class, 100),
+            env.getProperty("messages.batch.interval", Long.class, 1_000L));
+  }
+
+  @Bean
+  public MessageReader messageReader(final JdbcTemplate sql, final TransactionTemplate jdbcTransactions) {
+    return new MessageReader(sql, jdbcTransactions,
+            env.getProperty("messages.fetch.size", Integer.class, 1_000));
+  }
+
+  @Bean
+  public UpdateLog updateLog() {
+    return new UpdateLog(env.getProperty("log.updates.sample", Double.class, 0.0));
+  }
+
+  /**
+   * Depends on the writer and the outbound queue, so on shutdown the lanes
+   * finish their updates before those are drained and closed.
+   */
+  @Bean(destroyMethod = "close")
+  @DependsOn({"messageWriter", "outboundDispatcher"})
+  public UpdateDispatcher updateDispatcher(final MeterRegistry meterRegistry) {
+    return new UpdateDispatcher(meterRegistry,
+            env.getProperty("updates.lanes", Integer.class, Runtime.getRuntime().availableProcessors() * 2),
+            env.getProperty("updates.lane.capacity", Integer.class, 1_000),
+            env.getProperty("threads.virtual", Boolean.class, false));
+  }
+
+  @Bean
+  public OutboundDispatcher outboundDispatcher(final MeterRegistry meterRegistry) {
+    return new OutboundDispatcher(meterRegistry, new OutboundDispatcher.Settings()
+            .global(env.getProperty("outbound.global.rate", Long.class, 30L),
+                    env.getProperty("outbound.global.burst", Long.class, 30L))
+            .chat(env.getProperty("outbound.chat.rate", Long.class, 20L),
+                    env.getProperty("outbound.chat.burst", Long.class, 3L))
+            .privateChat(env.getProperty("outbound.private.rate", Long.class, 60L),
+                    env.getProperty("outbound.private.burst", Long.class, 1L))
+            .capacity(env.getProperty("outbound.queue.capacity", Integer.class, 10_000))
+            .retries(env.getProperty("outbound.retry.attempts", Integer.class, 5),
+                    env.getProperty("outbound.retry.backoff", Long.class, 500L))
+            .coalesce(env.getProperty("outbound.coalesce.window", Long.class, 200L)));
   }
 
   @Bean
@@ -1,15 +1,24 @@
 package ru.ustits.colleague;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j2;
 import org.slf4j.bridge.SLF4JBridgeHandler;
-import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.core.env.Environment;
 import org.telegram.telegrambots.ApiContextInitializer;
 import org.telegram.telegrambots.TelegramBotsApi;
 import org.telegram.telegrambots.exceptions.TelegramApiRequestException;
 import org.telegram.telegrambots.logging.BotLogger;
 
+import java.io.IOException;
+
 /**
+ * Starts the bot with long polling, or with a webhook server when
+ * {@code webhook.enabled} is set. Startup fails and the context is closed
+ * if the bot can not be registered with Telegram.
+ *
  * @author ustits
  */
 @Log4j2
@@ -21,19 +30,67 @@ public final class ColleagueApp {
     this.configs = configs;
   }
 
+  /**
+   * @throws IllegalStateException if Telegram refuses the bot or its
+   *                               webhook, or the webhook server can not
+   *                               be started
+   */
   public void register(final Class<? extends ColleagueBot> botClass) {
     BotLogger.registerLogger(new SLF4JBridgeHandler());
     ApiContextInitializer.init();
     final TelegramBotsApi api = new TelegramBotsApi();
 
-    final ApplicationContext context =
+    final AnnotationConfigApplicationContext context =
             new AnnotationConfigApplicationContext(configs);
+    context.registerShutdownHook();
     final ColleagueBot bot = context.getBean(botClass);
 
     try {
-      api.registerBot(bot);
-    } catch (TelegramApiRequestException e) {
-      log.error(e);
+      if (context.getEnvironment().getProperty("webhook.enabled", Boolean.class, false)) {
+        registerWebhook(bot, context);
+      } else {
+        api.registerBot(bot);
+      }
+    } catch (TelegramApiRequestException | IOException e) {
+      log.error("Unable to register bot, shutting down", e);
+      context.close();
+      throw new IllegalStateException("Unable to register bot", e);
+    }
+  }
+
+  /**
+   * Starts the webhook server and points Telegram to
+   * {@code webhook.url} followed by {@code webhook.path}, the path defaults
+   * to the bot token. The server is stopped first when the context closes,
+   * so updates already received are still processed, and right away when
+   * Telegram refuses the webhook, since no updates would arrive.
+   */
+  private void registerWebhook(final ColleagueBot bot, final AnnotationConfigApplicationContext context)
+          throws IOException, TelegramApiRequestException {
+    final Environment env = context.getEnvironment();
+    final String configured = env.getProperty("webhook.path", bot.getBotToken());
+    final String path = configured.startsWith("/") ? configured : "/" + configured;
+    final WebhookServer server = new WebhookServer(context.getBean(MeterRegistry.class),
+            new WebhookServer.Settings()
+                    .address(env.getProperty("webhook.host", "0.0.0.0"),
+                            env.getProperty("webhook.port", Integer.class, 8443))
+                    .path(path)
+                    .threads(env.getProperty("webhook.threads", Integer.class, 4),
+                            env.getProperty("webhook.capacity", Integer.class, 1_000),
+                            env.getProperty("threads.virtual", Boolean.class, false))
+                    .keystore(env.getProperty("webhook.keystore.path"),
+                            env.getProperty("webhook.keystore.password")),
+            bot::onUpdatesReceived);
+    server.start();
+    context.addApplicationListener((ApplicationListener<ContextClosedEvent>) event -> server.close());
+    final String url = env.getRequiredProperty("webhook.url");
+    try {
+      bot.setWebhook((url.endsWith("/") ? url.substring(0, url.length() - 1) : url) + path,
+              env.getProperty("webhook.certificate"),
+              env.getProperty("webhook.connections", Integer.class));
+    } catch (TelegramApiRequestException | RuntimeException e) {
+      server.close();
+      throw e;
     }
   }
 
@@ -1,18 +1,38 @@
 package ru.ustits.colleague;
 
 import lombok.extern.log4j.Log4j2;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.telegram.telegrambots.api.methods.BotApiMethod;
 import org.telegram.telegrambots.api.methods.PartialBotApiMethod;
 import org.telegram.telegrambots.api.methods.send.SendDocument;
 import org.telegram.telegrambots.api.methods.send.SendMessage;
 import org.telegram.telegrambots.api.methods.send.SendSticker;
+import org.telegram.telegrambots.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.api.objects.CallbackQuery;
 import org.telegram.telegrambots.api.objects.Update;
 import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.commandbot.TelegramLongPollingCommandBot;
 import org.telegram.telegrambots.bots.commandbot.commands.BotCommand;
 import org.telegram.telegrambots.exceptions.TelegramApiException;
+import org.telegram.telegrambots.exceptions.TelegramApiRequestException;
+import ru.ustits.colleague.outbound.MessageSender;
+import ru.ustits.colleague.outbound.OutboundDispatcher;
 
 import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * @author ustits
@@ -22,6 +42,10 @@ public abstract class ColleagueBot extends TelegramLongPollingCommandBot {
 
   private final String botToken;
   private final BotCommand[] commands;
+  private final MessageSender direct = this::execute;
+  private UpdateLog updateLog = new UpdateLog(0);
+  private UpdateDispatcher dispatcher;
+  private OutboundDispatcher outbound;
 
   public ColleagueBot(final String botName, final String botToken, final BotCommand[] commands) {
     super(new DefaultBotOptions(), true, botName);
@@ -29,19 +53,97 @@ public abstract class ColleagueBot extends TelegramLongPollingCommandBot {
     this.commands = commands;
   }
 
+  @Autowired(required = false)
+  public void setUpdateLog(final UpdateLog updateLog) {
+    this.updateLog = updateLog;
+  }
+
+  /**
+   * Processes updates of different chats in parallel, updates come in order
+   * one by one when no dispatcher is set.
+   */
+  @Autowired(required = false)
+  public void setDispatcher(final UpdateDispatcher dispatcher) {
+    this.dispatcher = dispatcher;
+  }
+
+  /**
+   * Routes sent text messages through the rate limited outbound queue, they
+   * are sent directly when no queue is set.
+   */
+  @Autowired(required = false)
+  public void setOutbound(final OutboundDispatcher outbound) {
+    this.outbound = outbound;
+  }
+
   @PostConstruct
   protected void initialize() {
     registerAll(commands);
   }
 
+  @Override
+  public void onUpdatesReceived(final List<Update> updates) {
+    if (dispatcher == null) {
+      super.onUpdatesReceived(updates);
+      return;
+    }
+    for (final Update update : updates) {
+      dispatcher.dispatch(update, () -> onUpdateReceived(update));
+    }
+  }
+
   @Override
   public void processNonCommandUpdate(final Update update) {
-    log.info(update);
+    updateLog.log(update);
     if (update.hasCallbackQuery()) {
       processCallback(update.getCallbackQuery());
     }
   }
 
+  /**
+   * Queues the message when the outbound queue is set, otherwise sends it
+   * right away. Unlike {@link #execute(BotApiMethod)} it does not return the
+   * sent message, which may not be sent yet.
+   */
+  public void enqueue(final SendMessage message) throws TelegramApiException {
+    if (outbound == null) {
+      execute(message);
+    } else {
+      outbound.submit(message, direct);
+    }
+  }
+
+  /**
+   * Asks Telegram to push updates to the url instead of answering long
+   * polling requests.
+   *
+   * @param certificate public certificate of a self-signed webhook, null when
+   *                    the certificate is signed by a trusted authority
+   */
+  public void setWebhook(final String url, final String certificate, final Integer maxConnections)
+          throws TelegramApiRequestException {
+    final MultipartEntityBuilder form = MultipartEntityBuilder.create()
+            .addTextBody(SetWebhook.URL_FIELD, url, ContentType.TEXT_PLAIN.withCharset(StandardCharsets.UTF_8));
+    if (certificate != null) {
+      form.addBinaryBody(SetWebhook.CERTIFICATE_FIELD, new File(certificate));
+    }
+    if (maxConnections != null) {
+      form.addTextBody(SetWebhook.MAXCONNECTIONS_FIELD, maxConnections.toString());
+    }
+    final HttpPost post = new HttpPost(getBaseUrl() + SetWebhook.PATH);
+    post.setEntity(form.build());
+    try (final CloseableHttpClient client = HttpClients.createDefault();
+         final CloseableHttpResponse response = client.execute(post)) {
+      final HttpEntity entity = response.getEntity();
+      final JSONObject result = new JSONObject(EntityUtils.toString(entity, StandardCharsets.UTF_8));
+      if (!result.getBoolean("ok")) {
+        throw new TelegramApiRequestException("Error setting webhook", result);
+      }
+    } catch (IOException | JSONException e) {
+      throw new TelegramApiRequestException("Unable to set webhook", e);
+    }
+  }
+
   @Override
   public void onClosing() {
     log.info("Closing");
@@ -70,7 +172,7 @@ public abstract class ColleagueBot extends TelegramLongPollingCommandBot {
     try {
       if (object instanceof SendMessage) {
         final SendMessage message = ((SendMessage) object).setChatId(chatId);
-        execute(message);
+        enqueue(message);
       } else if (object instanceof SendSticker) {
         final SendSticker sticker = ((SendSticker) object).setChatId(chatId);
         sendSticker(sticker);
@@ -0,0 +1,131 @@
+package ru.ustits.colleague;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.telegram.telegrambots.api.objects.Update;
+import ru.ustits.colleague.tools.Threads;
+
+import java.util.concurrent.*;
+
+/**
+ * Processes updates on a fixed set of single threaded lanes. Updates of one
+ * chat always go to the same lane, so they are handled in the order they
+ * were received, while different chats are handled in parallel. A full lane
+ * blocks the caller until it has room again. Lane queue depth and the time
+ * from dispatch to completion are reported per lane.
+ *
+ * @author ustits
+ */
+@Log4j2
+public class UpdateDispatcher {
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+  private final ThreadPoolExecutor[] lanes;
+  private final Timer[] latencies;
+
+  public UpdateDispatcher(final MeterRegistry registry, final int lanes, final int capacity) {
+    this(registry, lanes, capacity, false);
+  }
+
+  /**
+   * @param virtual run lanes on virtual threads when the runtime supports
+   *                them, which makes many lanes cheap
+   */
+  public UpdateDispatcher(final MeterRegistry registry, final int lanes, final int capacity,
+                          final boolean virtual) {
+    if (lanes <= 0 || capacity <= 0) {
+      throw new IllegalArgumentException("Lanes and capacity must be positive: " + lanes + ", " + capacity);
+    }
+    this.lanes = new ThreadPoolExecutor[lanes];
+    this.latencies = new Timer[lanes];
+    for (int i = 0; i < lanes; i++) {
+      final String name = "update-lane-" + i;
+      final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(capacity);
+      this.lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue,
+              Threads.factory(name, virtual),
+              UpdateDispatcher::waitForRoom);
+      final Tags tags = Tags.of("lane", String.valueOf(i));
+      this.latencies[i] = registry.timer("updates.lane.latency", tags);
+      registry.gauge("updates.lane.depth", tags, queue, BlockingQueue::size);
+    }
+  }
+
+  public void dispatch(final Update update, final Runnable handler) {
+    execute(key(update), handler);
+  }
+
+  public void execute(final long key, final Runnable task) {
+    final int lane = lane(key);
+    final long dispatched = System.nanoTime();
+    lanes[lane].execute(() -> {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        log.error("Unable to process update", e);
+      } finally {
+        latencies[lane].record(System.nanoTime() - dispatched, TimeUnit.NANOSECONDS);
+      }
+    });
+  }
+
+  public int lanes() {
+    return lanes.length;
+  }
+
+  public void close() {
+    for (final ExecutorService lane : lanes) {
+      lane.shutdown();
+    }
+    try {
+      for (final ExecutorService lane : lanes) {
+        lane.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    log.info("Update dispatcher closed");
+  }
+
+  int lane(final long key) {
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return (int) ((h >>> 32) % lanes.length);
+  }
+
+  /**
+   * @return chat id of the update, user id when it has no chat
+   */
+  static long key(final Update update) {
+    if (update.hasMessage()) {
+      return update.getMessage().getChatId();
+    } else if (update.hasEditedMessage()) {
+      return update.getEditedMessage().getChatId();
+    } else if (update.hasChannelPost()) {
+      return update.getChannelPost().getChatId();
+    } else if (update.hasEditedChannelPost()) {
+      return update.getEditedChannelPost().getChatId();
+    } else if (update.hasCallbackQuery()) {
+      return update.getCallbackQuery().getMessage() != null ?
+              update.getCallbackQuery().getMessage().getChatId() :
+              update.getCallbackQuery().getFrom().getId();
+    } else if (update.hasInlineQuery()) {
+      return update.getInlineQuery().getFrom().getId();
+    }
+    return 0L;
+  }
+
+  private static void waitForRoom(final Runnable task, final ThreadPoolExecutor executor) {
+    if (executor.isShutdown()) {
+      throw new RejectedExecutionException("Update dispatcher is closed");
+    }
+    try {
+      executor.getQueue().put(task);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while waiting for a lane", e);
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+package ru.ustits.colleague;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.message.AsynchronouslyFormattable;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+import org.telegram.telegrambots.api.objects.Message;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs received updates. Full update dumps are written at debug level or for
+ * a sampled fraction of updates and are formatted on the calling thread.
+ * Every other update is logged as a one line summary that copies a few
+ * fields of the update, an async logger formats it in the background. Rate
+ * limits are set with filters on this logger's category.
+ *
+ * @author ustits
+ */
+@Log4j2
+public final class UpdateLog {
+
+  private final double sample;
+
+  /**
+   * @param sample fraction of updates to dump in full at info level
+   */
+  public UpdateLog(final double sample) {
+    if (sample < 0 || sample > 1) {
+      throw new IllegalArgumentException("Sample must be in [0, 1]: " + sample);
+    }
+    this.sample = sample;
+  }
+
+  public void log(final Update update) {
+    if (log.isDebugEnabled()) {
+      log.debug("{}", update);
+    } else if (log.isInfoEnabled()) {
+      if (sample > 0 && ThreadLocalRandom.current().nextDouble() < sample) {
+        log.info("{}", update);
+      } else {
+        log.info(new Summary(update));
+      }
+    }
+  }
+
+  /**
+   * Keeps only immutable values taken from the update, so formatting it
+   * later on another thread neither races with changes to the update nor
+   * keeps it reachable.
+   */
+  @AsynchronouslyFormattable
+  static final class Summary implements org.apache.logging.log4j.message.Message, StringBuilderFormattable {
+
+    private static final Object[] NO_PARAMETERS = {};
+
+    private final Integer updateId;
+    private final String type;
+    private final Long chatId;
+    private final Integer userId;
+    private final Integer textLength;
+
+    Summary(final Update update) {
+      updateId = update.getUpdateId();
+      final Message message;
+      if (update.hasMessage()) {
+        type = "message";
+        message = update.getMessage();
+      } else if (update.hasEditedMessage()) {
+        type = "edited";
+        message = update.getEditedMessage();
+      } else if (update.hasChannelPost()) {
+        type = "post";
+        message = update.getChannelPost();
+      } else if (update.hasCallbackQuery()) {
+        type = "callback";
+        message = null;
+      } else if (update.hasInlineQuery()) {
+        type = "inline";
+        message = null;
+      } else {
+        type = "other";
+        message = null;
+      }
+      if (message != null) {
+        chatId = message.getChatId();
+        userId = message.getFrom() == null ? null : message.getFrom().getId();
+        textLength = message.hasText() ? message.getText().length() : null;
+      } else if (update.hasCallbackQuery()) {
+        chatId = update.getCallbackQuery().getMessage() == null ?
+                null : update.getCallbackQuery().getMessage().getChatId();
+        userId = update.getCallbackQuery().getFrom().getId();
+        textLength = null;
+      } else if (update.hasInlineQuery()) {
+        chatId = null;
+        userId = update.getInlineQuery().getFrom().getId();
+        textLength = null;
+      } else {
+        chatId = null;
+        userId = null;
+        textLength = null;
+      }
+    }
+
+    @Override
+    public void formatTo(final StringBuilder buffer) {
+      buffer.append("update=").append(updateId).append(" type=").append(type);
+      if (chatId != null) {
+        buffer.append(" chat=").append(chatId);
+      }
+      if (userId != null) {
+        buffer.append(" user=").append(userId);
+      }
+      if (textLength != null) {
+        buffer.append(" text=").append(textLength);
+      }
+    }
+
+    @Override
+    public String getFormattedMessage() {
+      final StringBuilder buffer = new StringBuilder(64);
+      formatTo(buffer);
+      return buffer.toString();
+    }
+
+    @Override
+    public String getFormat() {
+      return "";
+    }
+
+    @Override
+    public Object[] getParameters() {
+      return NO_PARAMETERS;
+    }
+
+    @Override
+    public Throwable getThrowable() {
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return getFormattedMessage();
+    }
+
+  }
+
+}
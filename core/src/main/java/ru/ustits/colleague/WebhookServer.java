@@ -0,0 +1,262 @@
+package ru.ustits.colleague;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.telegram.telegrambots.api.objects.Update;
+import ru.ustits.colleague.tools.Threads;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Receives updates pushed by Telegram to a webhook. The JDK server accepts
+ * connections on a single selector thread and parses requests on a small
+ * pool, each update is handed to the same path long polling uses and the
+ * request is answered as soon as the update is queued. When the update
+ * cannot be queued, e.g. the dispatcher is already closed, the request is
+ * answered with {@code 503}, so Telegram delivers the update again later.
+ * Failures while the update is processed on its lane happen after the
+ * answer, they are only logged and the update is not delivered again. Only
+ * {@code POST} requests to the configured path are accepted, so a path that
+ * is hard to guess keeps out updates not sent by Telegram. TLS is served from a
+ * keystore when one is set, otherwise it is left to a proxy in front.
+ *
+ * @author ustits
+ */
+@Log4j2
+public class WebhookServer {
+
+  private static final int OK = 200;
+  private static final int BAD_REQUEST = 400;
+  private static final int NOT_FOUND = 404;
+  private static final int METHOD_NOT_ALLOWED = 405;
+  private static final int TOO_LARGE = 413;
+  private static final int UNAVAILABLE = 503;
+  private static final int STOP_DELAY_SECONDS = 1;
+  private static final ObjectMapper MAPPER = new ObjectMapper()
+          .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  private final Settings settings;
+  private final Consumer<List<Update>> handler;
+  private final Timer latency;
+  private final Counter rejected;
+  private final Counter failed;
+  private HttpServer server;
+  private ExecutorService executor;
+
+  /**
+   * @param handler receives every update, usually
+   *                {@link ColleagueBot#onUpdatesReceived(List)}
+   */
+  public WebhookServer(final MeterRegistry registry, final Settings settings,
+                       final Consumer<List<Update>> handler) {
+    this.settings = settings;
+    this.handler = handler;
+    this.latency = registry.timer("webhook.receive.latency");
+    this.rejected = registry.counter("webhook.rejected");
+    this.failed = registry.counter("webhook.failed");
+  }
+
+  public synchronized void start() throws IOException {
+    if (server != null) {
+      throw new IllegalStateException("Webhook server is already started");
+    }
+    final InetSocketAddress address = new InetSocketAddress(settings.host, settings.port);
+    if (settings.keystore == null) {
+      server = HttpServer.create(address, 0);
+    } else {
+      final HttpsServer https = HttpsServer.create(address, 0);
+      https.setHttpsConfigurator(new HttpsConfigurator(sslContext()));
+      server = https;
+    }
+    executor = Threads.executor("webhook", settings.virtual, settings.threads, settings.capacity);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+    log.info("Listening for updates on {}{}", server.getAddress(), settings.keystore == null ? "" : " with TLS");
+  }
+
+  /**
+   * @return port the server listens on, useful when it was started on a
+   * random one
+   */
+  public synchronized int port() {
+    if (server == null) {
+      throw new IllegalStateException("Webhook server is not started");
+    }
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stops accepting updates, requests in progress are given a second to
+   * complete.
+   */
+  public synchronized void close() {
+    if (server == null) {
+      return;
+    }
+    server.stop(STOP_DELAY_SECONDS);
+    executor.shutdown();
+    server = null;
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    final long started = System.nanoTime();
+    try {
+      if (!settings.path.equals(exchange.getRequestURI().getPath())) {
+        reject(exchange, NOT_FOUND);
+        return;
+      }
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        reject(exchange, METHOD_NOT_ALLOWED);
+        return;
+      }
+      final byte[] body = read(exchange.getRequestBody(), settings.maxBodySize);
+      if (body == null) {
+        reject(exchange, TOO_LARGE);
+        return;
+      }
+      final Update update;
+      try {
+        update = MAPPER.readValue(body, Update.class);
+      } catch (JsonProcessingException e) {
+        log.warn("Unable to parse update: {}", e.getOriginalMessage());
+        reject(exchange, BAD_REQUEST);
+        return;
+      }
+      try {
+        handler.accept(Collections.singletonList(update));
+      } catch (RuntimeException e) {
+        log.error("Unable to queue update " + update.getUpdateId() + ", asking for redelivery", e);
+        failed.increment();
+        respond(exchange, UNAVAILABLE);
+        return;
+      }
+      latency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+      respond(exchange, OK);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void reject(final HttpExchange exchange, final int status) throws IOException {
+    rejected.increment();
+    respond(exchange, status);
+  }
+
+  private static void respond(final HttpExchange exchange, final int status) throws IOException {
+    exchange.sendResponseHeaders(status, -1);
+  }
+
+  /**
+   * @return the whole stream or null if it is longer than {@code limit}
+   */
+  private static byte[] read(final InputStream in, final int limit) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      if (bytes.size() + read > limit) {
+        return null;
+      }
+      bytes.write(buffer, 0, read);
+    }
+    return bytes.toByteArray();
+  }
+
+  private SSLContext sslContext() throws IOException {
+    try (final InputStream in = new FileInputStream(settings.keystore)) {
+      final KeyStore store = KeyStore.getInstance(KeyStore.getDefaultType());
+      store.load(in, settings.keystorePassword);
+      final KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+      keys.init(store, settings.keystorePassword);
+      final SSLContext context = SSLContext.getInstance("TLS");
+      context.init(keys.getKeyManagers(), null, null);
+      return context;
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Unable to load keystore " + settings.keystore, e);
+    }
+  }
+
+  public static final class Settings {
+
+    private String host = "0.0.0.0";
+    private int port = 8443;
+    private String path = "/";
+    private int threads = 4;
+    private int capacity = 1_000;
+    private boolean virtual;
+    private int maxBodySize = 1 << 20;
+    private String keystore;
+    private char[] keystorePassword;
+
+    public Settings address(final String host, final int port) {
+      this.host = host;
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * @param path the only path updates are accepted on, Telegram suggests
+     *             putting a secret like the bot token into it
+     */
+    public Settings path(final String path) {
+      if (!path.startsWith("/")) {
+        throw new IllegalArgumentException("Path must start with a slash: " + path);
+      }
+      this.path = path;
+      return this;
+    }
+
+    /**
+     * @param threads  threads parsing requests
+     * @param capacity requests waiting for a thread, above it the selector
+     *                 thread parses them itself and stops accepting
+     * @param virtual  parse every request on its own virtual thread when
+     *                 the runtime supports them
+     */
+    public Settings threads(final int threads, final int capacity, final boolean virtual) {
+      this.threads = threads;
+      this.capacity = capacity;
+      this.virtual = virtual;
+      return this;
+    }
+
+    public Settings maxBodySize(final int maxBodySize) {
+      this.maxBodySize = maxBodySize;
+      return this;
+    }
+
+    /**
+     * Serves the webhook over TLS with the key from the keystore.
+     */
+    public Settings keystore(final String keystore, final String password) {
+      this.keystore = keystore;
+      this.keystorePassword = password == null ? null : password.toCharArray();
+      return this;
+    }
+
+  }
+
+}
@@ -0,0 +1,80 @@
+package ru.ustits.colleague.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.core.env.PropertyResolver;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caffeine cache manager that builds every cache from its own
+ * specification, e.g. {@code cache.triggers.spec=maximumWeight=50000,expireAfterAccess=1h}.
+ * Caches without a specification fall back to {@code cache.default.spec}.
+ * Size-bounded caches are evicted with W-TinyLFU, weighted caches weigh
+ * collections by their size.
+ *
+ * @author ustits
+ */
+@Log4j2
+public class SpecCacheManager extends CaffeineCacheManager {
+
+  static final String DEFAULT_SPEC = "maximumSize=10000,expireAfterAccess=1h";
+
+  private static final String PREFIX = "cache.";
+  private static final String SUFFIX = ".spec";
+  private static final String MAXIMUM_WEIGHT = "maximumWeight";
+  private static final String RECORD_STATS = "recordStats";
+
+  private final PropertyResolver properties;
+  private final MeterRegistry registry;
+
+  public SpecCacheManager(final PropertyResolver properties, final MeterRegistry registry) {
+    this.properties = properties;
+    this.registry = registry;
+  }
+
+  @Override
+  protected Cache<Object, Object> createNativeCaffeineCache(final String name) {
+    final String spec = spec(name);
+    log.info("Creating cache {} with spec [{}]", name, spec);
+    final Caffeine<Object, Object> builder = Caffeine.from(spec);
+    if (spec.contains(MAXIMUM_WEIGHT)) {
+      builder.weigher(SpecCacheManager::weigh);
+    }
+    return CaffeineCacheMetrics.monitor(registry, builder.build(), name);
+  }
+
+  public Map<String, CacheStats> stats() {
+    final Map<String, CacheStats> stats = new LinkedHashMap<>();
+    for (final String name : getCacheNames()) {
+      final CaffeineCache cache = (CaffeineCache) getCache(name);
+      stats.put(name, cache.getNativeCache().stats());
+    }
+    return stats;
+  }
+
+  String spec(final String name) {
+    final String defaultSpec = properties.getProperty(PREFIX + "default" + SUFFIX, DEFAULT_SPEC);
+    final String spec = properties.getProperty(PREFIX + name + SUFFIX, defaultSpec);
+    if (spec.isEmpty()) {
+      return RECORD_STATS;
+    }
+    return spec.contains(RECORD_STATS) ? spec : spec + "," + RECORD_STATS;
+  }
+
+  static int weigh(final Object key, final Object value) {
+    if (value instanceof Collection) {
+      return ((Collection) value).size() + 1;
+    }
+    return 1;
+  }
+
+}
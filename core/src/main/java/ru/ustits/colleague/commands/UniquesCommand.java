@@ -0,0 +1,66 @@
+package ru.ustits.colleague.commands;
+
+import lombok.extern.log4j.Log4j2;
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+import org.telegram.telegrambots.api.objects.Chat;
+import org.telegram.telegrambots.api.objects.User;
+import org.telegram.telegrambots.bots.AbsSender;
+import org.telegram.telegrambots.bots.commandbot.commands.BotCommand;
+import org.telegram.telegrambots.exceptions.TelegramApiException;
+import ru.ustits.colleague.services.DistinctCounter;
+import ru.ustits.colleague.tools.IntParser;
+
+import java.time.LocalDate;
+
+/**
+ * Reports approximate numbers of distinct senders and words of the chat for
+ * the last days, seven unless passed as the first argument.
+ *
+ * @author ustits
+ */
+@Log4j2
+public final class UniquesCommand extends BotCommand {
+
+  private static final int DEFAULT_DAYS = 7;
+
+  private final DistinctCounter counter;
+  private final IntParser parser = new IntParser();
+
+  public UniquesCommand(final String commandIdentifier, final String description,
+                        final DistinctCounter counter) {
+    super(commandIdentifier, description);
+    this.counter = counter;
+  }
+
+  @Override
+  public void execute(final AbsSender absSender, final User user, final Chat chat,
+                      final String[] arguments) {
+    String text;
+    try {
+      text = report(chat.getId(), days(arguments));
+    } catch (IllegalArgumentException e) {
+      log.error("Unable to read unique counts of chat " + chat.getId(), e);
+      text = "Unique counts are unavailable";
+    }
+    try {
+      absSender.execute(new SendMessage(chat.getId(), text));
+    } catch (TelegramApiException e) {
+      log.error("Unable to send unique counts", e);
+    }
+  }
+
+  String report(final Long chatId, final int days) {
+    final LocalDate to = LocalDate.now();
+    final LocalDate from = to.minusDays(days - 1);
+    return String.format("Last %d days: ~%d unique users, ~%d unique words",
+            days, counter.users(chatId, from, to), counter.words(chatId, from, to));
+  }
+
+  int days(final String[] arguments) {
+    if (arguments == null || arguments.length == 0) {
+      return DEFAULT_DAYS;
+    }
+    return parser.parse(arguments[0]).filter(days -> days > 0).orElse(DEFAULT_DAYS);
+  }
+
+}
@@ -0,0 +1,37 @@
+package ru.ustits.colleague.migrations;
+
+import lombok.Value;
+import org.springframework.core.io.Resource;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SQL script named {@code V<version>__<description>.sql}.
+ *
+ * @author ustits
+ */
+@Value
+public final class Migration {
+
+  private static final Pattern NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+  private int version;
+
+  private String description;
+
+  private Resource script;
+
+  public static Optional<Migration> of(final Resource script) {
+    final String name = script.getFilename();
+    final Matcher matcher = NAME.matcher(name == null ? "" : name);
+    if (matcher.matches()) {
+      final int version = Integer.parseInt(matcher.group(1));
+      final String description = matcher.group(2).replace('_', ' ');
+      return Optional.of(new Migration(version, description, script));
+    }
+    return Optional.empty();
+  }
+
+}
@@ -0,0 +1,120 @@
+package ru.ustits.colleague.migrations;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Applies {@code db/migration/V*__*.sql} scripts in version order, each one in
+ * its own transaction, and records them in {@code schema_version}. Bots
+ * sharing a database may start together, so every migration is applied
+ * under an advisory lock. A script may be split into steps by
+ * {@code -- commit} lines, each step is committed separately and the
+ * version is recorded with the last one, so steps have to be safe to run
+ * again.
+ *
+ * @author ustits
+ */
+@Log4j2
+public class MigrationRunner {
+
+  static final String LOCATION = "classpath*:db/migration/V*__*.sql";
+
+  private static final long LOCK_KEY = 0x636f6c6c65616775L;
+  private static final Pattern STEP = Pattern.compile("^-- commit$", Pattern.MULTILINE);
+
+  private final JdbcTemplate sql;
+  private final TransactionTemplate transactions;
+  private final ResourcePatternResolver resolver;
+
+  public MigrationRunner(final DataSource dataSource) {
+    this.sql = new JdbcTemplate(dataSource);
+    this.transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    this.resolver = new PathMatchingResourcePatternResolver();
+  }
+
+  public int migrate() {
+    sql.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version integer PRIMARY KEY, " +
+            "description text NOT NULL, " +
+            "applied_at timestamp without time zone NOT NULL DEFAULT now())");
+    int applied = 0;
+    for (final Migration migration : migrations()) {
+      final List<String> steps = steps(read(migration.getScript()));
+      for (int i = 0; i < steps.size(); i++) {
+        final String step = steps.get(i);
+        final boolean last = i == steps.size() - 1;
+        final Boolean done = transactions.execute(status -> apply(migration, step, last));
+        if (Boolean.TRUE.equals(done)) {
+          applied++;
+        }
+      }
+    }
+    log.info("Applied {} migrations", applied);
+    return applied;
+  }
+
+  List<Migration> migrations() {
+    final List<Migration> migrations = new ArrayList<>();
+    try {
+      for (final Resource resource : resolver.getResources(LOCATION)) {
+        final Optional<Migration> migration = Migration.of(resource);
+        migration.ifPresent(migrations::add);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to list migrations", e);
+    }
+    migrations.sort(Comparator.comparingInt(Migration::getVersion));
+    return migrations;
+  }
+
+  static List<String> steps(final String script) {
+    return Arrays.asList(STEP.split(script));
+  }
+
+  /**
+   * @return whether the migration got recorded as applied
+   */
+  private boolean apply(final Migration migration, final String step, final boolean last) {
+    sql.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, LOCK_KEY);
+    final Boolean applied = sql.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM schema_version WHERE version=?)",
+            Boolean.class, migration.getVersion());
+    if (Boolean.TRUE.equals(applied)) {
+      return false;
+    }
+    log.info("Applying migration {}: {}", migration.getVersion(), migration.getDescription());
+    sql.execute(step);
+    if (!last) {
+      return false;
+    }
+    sql.update("INSERT INTO schema_version (version, description) VALUES (?, ?)",
+            migration.getVersion(), migration.getDescription());
+    return true;
+  }
+
+  private String read(final Resource script) {
+    try (final InputStream data = script.getInputStream()) {
+      return StreamUtils.copyToString(data, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read migration " + script.getFilename(), e);
+    }
+  }
+
+}
@@ -0,0 +1,14 @@
+package ru.ustits.colleague.outbound;
+
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+import org.telegram.telegrambots.exceptions.TelegramApiException;
+
+/**
+ * @author ustits
+ */
+@FunctionalInterface
+public interface MessageSender {
+
+  void send(final SendMessage message) throws TelegramApiException;
+
+}
@@ -0,0 +1,494 @@
+package ru.ustits.colleague.outbound;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+import org.telegram.telegrambots.exceptions.TelegramApiException;
+import org.telegram.telegrambots.exceptions.TelegramApiRequestException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Central queue of outgoing messages that keeps the bot within Telegram
+ * limits. A message is sent when both the global token bucket and the bucket
+ * of its chat have a token, groups and channels get the group limit and
+ * private chats the private one. Chats with pending messages take turns, so
+ * a busy chat does not delay the others. A {@code 429} answer pauses the
+ * chat for the {@code retry_after} seconds given by Telegram without using
+ * up an attempt, other failures are retried with exponential backoff up to
+ * {@code maxAttempts} times.
+ * <p>
+ * With a coalescing window set, a message waits that long after it was
+ * queued and is then sent together with the plain text messages queued
+ * behind it for the same chat, joined by new lines up to the Telegram limit
+ * of {@value #MAX_TEXT_LENGTH} characters. The merged text is sent as a new
+ * message, submitted ones are never changed. If Telegram rejects a merged
+ * message, its parts are sent one by one.
+ *
+ * @author ustits
+ */
+@Log4j2
+public class OutboundDispatcher {
+
+  private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+  private static final int TOO_MANY_REQUESTS = 429;
+  private static final int MAX_TEXT_LENGTH = 4096;
+  private static final String TEXT = "text";
+  private static final ObjectMapper MAPPER = new ObjectMapper()
+          .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  private final Settings settings;
+  private final LongSupplier clock;
+  private final TokenBucket global;
+  private final Map<String, ChatQueue> chats = new HashMap<>();
+  private final Deque<String> turns = new ArrayDeque<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Timer latency;
+  private final Counter retries;
+  private final Counter dropped;
+  private final Counter coalesced;
+  private final Thread worker;
+  private long waitNanos;
+  private volatile boolean running = true;
+
+  public OutboundDispatcher(final MeterRegistry registry, final Settings settings) {
+    this(registry, settings, System::nanoTime);
+  }
+
+  OutboundDispatcher(final MeterRegistry registry, final Settings settings, final LongSupplier clock) {
+    this.settings = settings;
+    this.clock = clock;
+    this.global = TokenBucket.perSecond(settings.globalRate, settings.globalBurst, clock.getAsLong());
+    this.latency = registry.timer("outbound.send.latency");
+    this.retries = registry.counter("outbound.retries");
+    this.dropped = registry.counter("outbound.dropped");
+    this.coalesced = registry.counter("outbound.coalesced");
+    registry.gauge("outbound.queue.depth", pending);
+    this.worker = new Thread(this::run, "outbound-dispatcher");
+    this.worker.setDaemon(true);
+  }
+
+  @PostConstruct
+  public void start() {
+    worker.start();
+  }
+
+  /**
+   * Queues the message, it is sent later by the dispatcher thread.
+   *
+   * @return false if the queue is full or closed and the message is dropped
+   */
+  public boolean submit(final SendMessage message, final MessageSender sender) {
+    final Outgoing outgoing = new Outgoing(message, sender, clock.getAsLong());
+    synchronized (this) {
+      if (!running) {
+        log.warn("Outbound dispatcher is closed, dropping message to chat {}", message.getChatId());
+        dropped.increment();
+        return false;
+      }
+      if (pending.get() >= settings.capacity) {
+        log.warn("Outbound queue is full, dropping message to chat {}", message.getChatId());
+        dropped.increment();
+        return false;
+      }
+      final String chatId = message.getChatId();
+      final ChatQueue chat = chats.computeIfAbsent(chatId, id -> new ChatQueue(settings, id, outgoing.submitted));
+      if (chat.messages.isEmpty()) {
+        turns.add(chatId);
+      }
+      chat.messages.add(outgoing);
+      pending.incrementAndGet();
+      notifyAll();
+    }
+    return true;
+  }
+
+  public int pending() {
+    return pending.get();
+  }
+
+  /**
+   * Stops accepting messages and waits for the queued ones to be sent.
+   */
+  @PreDestroy
+  public void close() {
+    synchronized (this) {
+      running = false;
+      notifyAll();
+    }
+    try {
+      worker.join(SHUTDOWN_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (pending.get() > 0) {
+      log.warn("Outbound dispatcher closed with {} unsent messages", pending.get());
+    }
+    worker.interrupt();
+  }
+
+  private void run() {
+    while (running || pending.get() > 0) {
+      final Outgoing next;
+      try {
+        next = next();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (next != null) {
+        send(next);
+      }
+    }
+  }
+
+  /**
+   * Sends every message the limits allow at the moment on the calling
+   * thread, for tests that drive the clock instead of starting the worker.
+   */
+  void sendReady() {
+    Outgoing next;
+    while ((next = poll()) != null) {
+      send(next);
+    }
+  }
+
+  /**
+   * Takes the next message allowed by the limits, waits until the earliest
+   * time one may be allowed otherwise.
+   */
+  private synchronized Outgoing next() throws InterruptedException {
+    final Outgoing next = poll();
+    if (next == null && waitNanos > 0) {
+      TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+    }
+    return next;
+  }
+
+  /**
+   * @return the next message allowed by the limits or null, in which case
+   * {@link #waitNanos} is set to the time until one may be allowed
+   */
+  private synchronized Outgoing poll() {
+    final long now = clock.getAsLong();
+    waitNanos = IDLE_NANOS;
+    for (int i = turns.size(); i > 0; i--) {
+      final String chatId = turns.poll();
+      final ChatQueue chat = chats.get(chatId);
+      final long window = chat.messages.peek().submitted + settings.coalesceWindow - now;
+      final long chatWait = Math.max(Math.max(chat.pausedUntil - now, chat.bucket.delay(now)), window);
+      if (chatWait > 0) {
+        waitNanos = Math.min(waitNanos, chatWait);
+        turns.add(chatId);
+        continue;
+      }
+      final long globalWait = global.delay(now);
+      if (globalWait > 0) {
+        waitNanos = Math.min(waitNanos, globalWait);
+        turns.addFirst(chatId);
+        break;
+      }
+      global.take(now);
+      chat.bucket.take(now);
+      Outgoing next = chat.messages.poll();
+      if (settings.coalesceWindow > 0) {
+        next = coalesce(next, chat.messages);
+      }
+      if (!chat.messages.isEmpty()) {
+        turns.add(chatId);
+      }
+      return next;
+    }
+    if (turns.isEmpty()) {
+      chats.values().removeIf(chat -> chat.messages.isEmpty() && chat.bucket.isFull(now) &&
+              chat.pausedUntil <= now);
+      if (!running) {
+        waitNanos = 0;
+      }
+    }
+    return null;
+  }
+
+  private void send(final Outgoing outgoing) {
+    try {
+      outgoing.sender.send(outgoing.message);
+      pending.addAndGet(-outgoing.count);
+      latency.record(clock.getAsLong() - outgoing.submitted, TimeUnit.NANOSECONDS);
+    } catch (TelegramApiRequestException e) {
+      final Integer retryAfter = e.getParameters() == null ? null : e.getParameters().getRetryAfter();
+      if (e.getErrorCode() != null && e.getErrorCode() == TOO_MANY_REQUESTS && retryAfter != null) {
+        log.warn("Chat {} is rate limited for {} seconds", outgoing.message.getChatId(), retryAfter);
+        retries.increment();
+        requeue(outgoing, TimeUnit.SECONDS.toNanos(retryAfter));
+      } else if (e.getErrorCode() != null && e.getErrorCode() < 500 && e.getErrorCode() != TOO_MANY_REQUESTS) {
+        if (outgoing.parts.isEmpty()) {
+          drop(outgoing, e);
+        } else {
+          split(outgoing, e);
+        }
+      } else {
+        retry(outgoing, backoff(outgoing.attempts), e);
+      }
+    } catch (TelegramApiException | RuntimeException e) {
+      retry(outgoing, backoff(outgoing.attempts), e);
+    }
+  }
+
+  private void retry(final Outgoing outgoing, final long delay, final Exception cause) {
+    if (outgoing.attempts + 1 >= settings.maxAttempts) {
+      drop(outgoing, cause);
+      return;
+    }
+    outgoing.attempts++;
+    retries.increment();
+    requeue(outgoing, delay);
+  }
+
+  /**
+   * Puts the message back at the head of its chat and pauses the chat.
+   */
+  private synchronized void requeue(final Outgoing outgoing, final long delay) {
+    final long now = clock.getAsLong();
+    final String chatId = outgoing.message.getChatId();
+    final ChatQueue chat = chats.computeIfAbsent(chatId, id -> new ChatQueue(settings, id, now));
+    if (chat.messages.isEmpty()) {
+      turns.add(chatId);
+    }
+    chat.messages.addFirst(outgoing);
+    chat.pausedUntil = Math.max(chat.pausedUntil, now + delay);
+    notifyAll();
+  }
+
+  /**
+   * Queues the parts of a rejected merged message to be sent one by one in
+   * its place.
+   */
+  private synchronized void split(final Outgoing merged, final Exception cause) {
+    log.warn("Chat " + merged.message.getChatId() + " rejected " + merged.count +
+            " merged messages, sending them separately", cause);
+    for (int i = merged.parts.size() - 1; i >= 0; i--) {
+      requeue(merged.parts.get(i), 0);
+    }
+  }
+
+  private void drop(final Outgoing outgoing, final Exception cause) {
+    pending.addAndGet(-outgoing.count);
+    dropped.increment(outgoing.count);
+    log.error("Unable to send message to chat " + outgoing.message.getChatId() +
+            " after " + (outgoing.attempts + 1) + " attempts", cause);
+  }
+
+  /**
+   * Joins the texts of the head message and the following compatible ones,
+   * stops at the first message that can not be merged to keep the order.
+   *
+   * @return the head itself when nothing follows it, otherwise a new
+   * message made of the merged parts
+   */
+  private Outgoing coalesce(final Outgoing head, final Deque<Outgoing> queue) {
+    if (!head.mergeable()) {
+      return head;
+    }
+    final StringBuilder text = new StringBuilder(head.message.getText());
+    final List<Outgoing> parts = new ArrayList<>();
+    parts.add(head);
+    while (!queue.isEmpty()) {
+      final Outgoing next = queue.peek();
+      if (next.sender != head.sender || !next.mergeable() || !next.shape().equals(head.shape()) ||
+              text.length() + 1 + next.message.getText().length() > MAX_TEXT_LENGTH) {
+        break;
+      }
+      parts.add(queue.poll());
+      text.append('\n').append(next.message.getText());
+    }
+    if (parts.size() == 1) {
+      return head;
+    }
+    final SendMessage message;
+    try {
+      message = MAPPER.treeToValue(((ObjectNode) head.shape().deepCopy()).put(TEXT, text.toString()),
+              SendMessage.class);
+    } catch (JsonProcessingException e) {
+      log.warn("Unable to merge messages to chat " + head.message.getChatId(), e);
+      for (int i = parts.size() - 1; i > 0; i--) {
+        queue.addFirst(parts.get(i));
+      }
+      return head;
+    }
+    final Outgoing merged = new Outgoing(message, head.sender, head.submitted, parts);
+    merged.attempts = head.attempts;
+    coalesced.increment(merged.count - 1);
+    return merged;
+  }
+
+  private long backoff(final int attempts) {
+    return TimeUnit.MILLISECONDS.toNanos(settings.backoffMillis << Math.min(attempts, 16));
+  }
+
+  /**
+   * Limits of the dispatcher, defaults follow the limits documented by
+   * Telegram: 30 messages per second overall, 20 per minute in a group and
+   * about one per second in a private chat.
+   */
+  public static final class Settings {
+
+    private long globalRate = 30;
+    private long globalBurst = 30;
+    private long chatRate = 20;
+    private long chatBurst = 3;
+    private long privateRate = 60;
+    private long privateBurst = 1;
+    private int capacity = 10_000;
+    private int maxAttempts = 5;
+    private long backoffMillis = 500;
+    private long coalesceWindow = 0;
+
+    /**
+     * @param rate  messages per second
+     * @param burst messages sent at once after a quiet period
+     */
+    public Settings global(final long rate, final long burst) {
+      this.globalRate = rate;
+      this.globalBurst = burst;
+      return this;
+    }
+
+    /**
+     * Limit of a group or channel, chats with negative ids or usernames.
+     *
+     * @param rate  messages per minute
+     * @param burst messages sent at once after a quiet period
+     */
+    public Settings chat(final long rate, final long burst) {
+      this.chatRate = rate;
+      this.chatBurst = burst;
+      return this;
+    }
+
+    /**
+     * Limit of a private chat with a user, chats with positive ids.
+     *
+     * @param rate  messages per minute
+     * @param burst messages sent at once after a quiet period
+     */
+    public Settings privateChat(final long rate, final long burst) {
+      this.privateRate = rate;
+      this.privateBurst = burst;
+      return this;
+    }
+
+    public Settings capacity(final int capacity) {
+      this.capacity = capacity;
+      return this;
+    }
+
+    public Settings retries(final int maxAttempts, final long backoffMillis) {
+      this.maxAttempts = maxAttempts;
+      this.backoffMillis = backoffMillis;
+      return this;
+    }
+
+    /**
+     * @param windowMillis time a message waits for others to merge with,
+     *                     zero disables coalescing
+     */
+    public Settings coalesce(final long windowMillis) {
+      this.coalesceWindow = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+      return this;
+    }
+
+  }
+
+  private static final class ChatQueue {
+
+    private final Deque<Outgoing> messages = new ArrayDeque<>();
+    private final TokenBucket bucket;
+    private long pausedUntil;
+
+    private ChatQueue(final Settings settings, final String chatId, final long now) {
+      this.bucket = isPrivate(chatId) ?
+              TokenBucket.perMinute(settings.privateRate, settings.privateBurst, now) :
+              TokenBucket.perMinute(settings.chatRate, settings.chatBurst, now);
+      this.pausedUntil = now;
+    }
+
+    /**
+     * @return true for a user id, groups have negative ids and channels may
+     * be addressed by username
+     */
+    private static boolean isPrivate(final String chatId) {
+      try {
+        return Long.parseLong(chatId) > 0;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+
+  }
+
+  private static final class Outgoing {
+
+    private final SendMessage message;
+    private final MessageSender sender;
+    private final long submitted;
+    private final List<Outgoing> parts;
+    private final int count;
+    private int attempts;
+    private boolean separate;
+    private JsonNode shape;
+
+    private Outgoing(final SendMessage message, final MessageSender sender, final long submitted) {
+      this(message, sender, submitted, Collections.emptyList());
+    }
+
+    /**
+     * @param parts messages merged into this one
+     */
+    private Outgoing(final SendMessage message, final MessageSender sender, final long submitted,
+                     final List<Outgoing> parts) {
+      this.message = message;
+      this.sender = sender;
+      this.submitted = submitted;
+      this.parts = parts;
+      this.count = parts.isEmpty() ? 1 : parts.size();
+      for (final Outgoing part : parts) {
+        part.separate = true;
+      }
+    }
+
+    /**
+     * @return false for merged messages and their parts, a rejected merge is
+     * not tried again
+     */
+    private boolean mergeable() {
+      return parts.isEmpty() && !separate && message.getText() != null && message.getReplyMarkup() == null &&
+              message.getReplyToMessageId() == null;
+    }
+
+    /**
+     * @return every field of the message except its text
+     */
+    private JsonNode shape() {
+      if (shape == null) {
+        final ObjectNode fields = MAPPER.valueToTree(message);
+        fields.remove(TEXT);
+        shape = fields;
+      }
+      return shape;
+    }
+
+  }
+
+}
@@ -0,0 +1,59 @@
+package ru.ustits.colleague.outbound;
+
+/**
+ * Token bucket holding up to {@code capacity} tokens and refilled with one
+ * token every {@code interval} nanos. Not thread safe, callers synchronize.
+ *
+ * @author ustits
+ */
+final class TokenBucket {
+
+  private final long capacity;
+  private final long interval;
+  private double tokens;
+  private long refilled;
+
+  TokenBucket(final long capacity, final long interval, final long now) {
+    if (capacity <= 0 || interval <= 0) {
+      throw new IllegalArgumentException("Capacity and interval must be positive: " + capacity + ", " + interval);
+    }
+    this.capacity = capacity;
+    this.interval = interval;
+    this.tokens = capacity;
+    this.refilled = now;
+  }
+
+  static TokenBucket perSecond(final long rate, final long burst, final long now) {
+    return new TokenBucket(burst, 1_000_000_000L / rate, now);
+  }
+
+  static TokenBucket perMinute(final long rate, final long burst, final long now) {
+    return new TokenBucket(burst, 60_000_000_000L / rate, now);
+  }
+
+  /**
+   * @return nanos until a token is available, zero if it is now
+   */
+  long delay(final long now) {
+    refill(now);
+    return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * interval);
+  }
+
+  void take(final long now) {
+    refill(now);
+    tokens -= 1;
+  }
+
+  boolean isFull(final long now) {
+    refill(now);
+    return tokens >= capacity;
+  }
+
+  private void refill(final long now) {
+    if (now > refilled) {
+      tokens = Math.min(capacity, tokens + (double) (now - refilled) / interval);
+      refilled = now;
+    }
+  }
+
+}
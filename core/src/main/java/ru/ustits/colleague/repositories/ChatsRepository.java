@@ -2,7 +2,10 @@ package ru.ustits.colleague.repositories;
 
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.ustits.colleague.repositories.records.ChatRecord;
 
 import java.util.Optional;
@@ -13,7 +16,7 @@ import java.util.Optional;
 public interface ChatsRepository extends CrudRepository<ChatRecord, Long> {
 
   @Override
-  @CacheEvict(allEntries = true, cacheNames = {"chats", "chats_exists"})
+  @CacheEvict(cacheNames = {"chats", "chats_exists"}, key = "#p0.id")
   <S extends ChatRecord> S save(final S entity);
 
   @Override
@@ -24,4 +27,13 @@ public interface ChatsRepository extends CrudRepository<ChatRecord, Long> {
   @Cacheable(cacheNames = "chats_exists")
   boolean existsById(final Long aLong);
 
+  @Modifying
+  @Transactional
+  @CacheEvict(cacheNames = {"chats", "chats_exists"}, key = "#p0")
+  @Query(value = "INSERT INTO chats (id, title) VALUES (?1, ?2) " +
+          "ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title " +
+          "WHERE chats.title IS DISTINCT FROM EXCLUDED.title",
+          nativeQuery = true)
+  void upsert(final Long id, final String title);
+
 }
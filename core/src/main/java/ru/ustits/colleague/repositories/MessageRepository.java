@@ -10,6 +10,11 @@ import java.util.List;
  */
 public interface MessageRepository extends CrudRepository<MessageRecord, Integer> {
 
+  /**
+   * @deprecated loads every message of the user into memory, use
+   * {@link ru.ustits.colleague.services.MessageReader} instead
+   */
+  @Deprecated
   List<MessageRecord> findAllByUserIdAndChatId(final Long userId, final Long chatId);
 
 }
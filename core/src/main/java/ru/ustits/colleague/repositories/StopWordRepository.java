@@ -1,6 +1,7 @@
 package ru.ustits.colleague.repositories;
 
 import org.springframework.cache.annotation.CacheConfig;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.repository.CrudRepository;
 import ru.ustits.colleague.repositories.records.StopWordRecord;
@@ -15,4 +16,16 @@ public interface StopWordRepository extends CrudRepository<StopWordRecord, Integ
   @Cacheable
   Iterable<StopWordRecord> findAll();
 
+  @Override
+  @CacheEvict(allEntries = true)
+  <S extends StopWordRecord> S save(final S entity);
+
+  @Override
+  @CacheEvict(allEntries = true)
+  void deleteById(final Integer id);
+
+  @Override
+  @CacheEvict(allEntries = true)
+  void delete(final StopWordRecord entity);
+
 }
@@ -16,20 +16,36 @@ import java.util.List;
 public interface TriggerRepository extends CrudRepository<TriggerRecord, Integer> {
 
   @Override
-  @CacheEvict(allEntries = true)
+  @CacheEvict(key = "#p0.chatId")
   <S extends TriggerRecord> S save(final S entity);
 
+  /**
+   * Clears the cached triggers of every chat since the chat of the trigger
+   * is unknown here.
+   *
+   * @deprecated use {@link #deleteByIdAndChatId(Integer, Long)} which only
+   * evicts the chat of the trigger
+   */
   @Override
+  @Deprecated
   @CacheEvict(allEntries = true)
   void deleteById(final Integer id);
 
+  @Override
+  @CacheEvict(key = "#p0.chatId")
+  void delete(final TriggerRecord entity);
+
+  @Transactional
+  @CacheEvict(key = "#p1")
+  void deleteByIdAndChatId(final Integer id, final Long chatId);
+
   @Cacheable
   List<TriggerRecord> findAllByChatId(final Long chatId);
 
   boolean existsByTriggerAndChatIdAndUserId(final String trigger, final Long chatId, final Long userId);
 
   @Transactional
-  @CacheEvict(allEntries = true)
+  @CacheEvict(key = "#p1")
   void deleteByTriggerAndChatIdAndUserId(final String trigger, final Long chatId, final Long userId);
 
 }
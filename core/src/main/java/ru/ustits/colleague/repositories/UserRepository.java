@@ -3,7 +3,10 @@ package ru.ustits.colleague.repositories;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.ustits.colleague.repositories.records.UserRecord;
 
 /**
@@ -13,11 +16,22 @@ import ru.ustits.colleague.repositories.records.UserRecord;
 public interface UserRepository extends CrudRepository<UserRecord, Long> {
 
   @Override
-  @CacheEvict(allEntries = true)
+  @CacheEvict(key = "#p0.id")
   <S extends UserRecord> S save(S entity);
 
   @Override
   @Cacheable
   boolean existsById(Long aLong);
 
+  @Modifying
+  @Transactional
+  @CacheEvict(key = "#p0")
+  @Query(value = "INSERT INTO users (id, first_name, last_name, user_name) VALUES (?1, ?2, ?3, ?4) " +
+          "ON CONFLICT (id) DO UPDATE SET first_name = EXCLUDED.first_name, " +
+          "last_name = EXCLUDED.last_name, user_name = EXCLUDED.user_name " +
+          "WHERE (users.first_name, users.last_name, users.user_name) IS DISTINCT FROM " +
+          "(EXCLUDED.first_name, EXCLUDED.last_name, EXCLUDED.user_name)",
+          nativeQuery = true)
+  void upsert(final Long id, final String firstName, final String lastName, final String userName);
+
 }
@@ -0,0 +1,129 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+import ru.ustits.colleague.repositories.records.UserRecord;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Hourly per-user message rollups. Range statistics are answered from the
+ * rollups only, so {@link PartitionManager} can drop raw messages after
+ * {@code messages.retention.days} without losing history.
+ *
+ * @author ustits
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class ActivityService implements MessageBatchHandler {
+
+  private static final String UPSERT = "INSERT INTO message_activity (chat_id, user_id, hour, count) " +
+          "VALUES (?, ?, ?, ?) " +
+          "ON CONFLICT (chat_id, hour, user_id) DO UPDATE SET count = message_activity.count + EXCLUDED.count";
+  private static final Comparator<HourKey> ORDER = Comparator.comparing(HourKey::getChatId)
+          .thenComparing(HourKey::getHour)
+          .thenComparing(HourKey::getUserId);
+
+  private final JdbcTemplate sql;
+  private final TransactionTemplate transactions;
+
+  @Override
+  public void handle(final List<MessageRecord> batch) {
+    final Map<HourKey, Integer> counts = new TreeMap<>(ORDER);
+    for (final MessageRecord record : batch) {
+      if (!record.getIsEdited()) {
+        counts.merge(new HourKey(record.getChatId(), hour(record.getDate()), record.getUserId()), 1, Integer::sum);
+      }
+    }
+    final List<Object[]> args = new ArrayList<>(counts.size());
+    counts.forEach((key, count) -> args.add(
+            new Object[]{key.getChatId(), key.getUserId(), key.getHour(), count}));
+    sql.batchUpdate(UPSERT, args);
+  }
+
+  public Map<UserRecord, Integer> activity(final Long chatId, final Date from, final Date to) {
+    final Map<UserRecord, Integer> counts = new LinkedHashMap<>();
+    return sql.query("SELECT users.id, users.first_name, users.last_name, users.user_name, " +
+                    "sum(message_activity.count) AS messages_count " +
+                    "FROM message_activity " +
+                    "INNER JOIN users ON (message_activity.user_id = users.id) " +
+                    "WHERE message_activity.chat_id=? " +
+                    "AND message_activity.hour >= ? AND message_activity.hour < ? " +
+                    "GROUP BY users.id " +
+                    "ORDER BY messages_count DESC",
+            new Object[]{chatId, hour(from), new Timestamp(to.getTime())},
+            rs -> {
+              while (rs.next()) {
+                final UserRecord user = new UserRecord(rs.getLong(1), rs.getString(2),
+                        rs.getString(3), rs.getString(4));
+                counts.put(user, rs.getInt(5));
+              }
+              return counts;
+            });
+  }
+
+  public Map<UserRecord, Integer> today(final Long chatId) {
+    return activity(chatId, toDate(LocalDate.now().atStartOfDay()), new Date());
+  }
+
+  public Map<UserRecord, Integer> thisWeek(final Long chatId) {
+    final LocalDate monday = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    return activity(chatId, toDate(monday.atStartOfDay()), new Date());
+  }
+
+  /**
+   * Rebuilds the rollups of every chat from the raw messages, one chat per
+   * transaction, while concurrent rollup updates are briefly blocked.
+   * Rollups of existing databases are filled by a migration, this is for
+   * repairing them.
+   */
+  public void backfill() {
+    final List<Long> chats = sql.queryForList("SELECT id FROM chats", Long.class);
+    log.info("Backfilling message activity for {} chats", chats.size());
+    for (final Long chatId : chats) {
+      transactions.execute(status -> {
+        sql.execute("LOCK TABLE message_activity IN SHARE ROW EXCLUSIVE MODE");
+        sql.update("DELETE FROM message_activity WHERE chat_id=?", chatId);
+        return sql.update("INSERT INTO message_activity (chat_id, user_id, hour, count) " +
+                "SELECT chat_id, user_id, date_trunc('hour', date), count(*) FROM messages " +
+                "WHERE chat_id=? AND user_id IS NOT NULL AND NOT is_edited " +
+                "GROUP BY chat_id, user_id, date_trunc('hour', date)", chatId);
+      });
+    }
+    log.info("Message activity backfilled");
+  }
+
+  static Timestamp hour(final Date date) {
+    final LocalDateTime time = LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    return Timestamp.valueOf(time.truncatedTo(ChronoUnit.HOURS));
+  }
+
+  private static Date toDate(final LocalDateTime time) {
+    return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+  }
+
+  @Value
+  private static class HourKey {
+
+    private Long chatId;
+
+    private Timestamp hour;
+
+    private Long userId;
+
+  }
+
+}
@@ -0,0 +1,77 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import ru.ustits.colleague.repositories.ChatStateRepository;
+import ru.ustits.colleague.repositories.ChatsRepository;
+import ru.ustits.colleague.repositories.records.ChatRecord;
+import ru.ustits.colleague.repositories.records.ChatStateRecord;
+import ru.ustits.colleague.tools.ConcurrentLongMap;
+import ru.ustits.colleague.triggers.ResponseStrategies;
+import ru.ustits.colleague.triggers.ResponseStrategy;
+
+import java.util.Optional;
+
+/**
+ * Parsed trigger response strategy of every chat. A chat's state is read
+ * from the database once, on its first message, and replaced when it is
+ * switched, so resolving the strategy of a message is a map lookup.
+ *
+ * @author ustits
+ */
+@Log4j2
+@RequiredArgsConstructor
+public class ChatStateRegistry {
+
+  private final ChatsRepository chats;
+  private final ChatStateRepository states;
+  private final ConcurrentLongMap<ResponseStrategy> strategies = new ConcurrentLongMap<>();
+
+  public ResponseStrategy strategy(final long chatId) {
+    return strategies.computeIfAbsent(chatId, this::load);
+  }
+
+  /**
+   * Persists the new state of the chat and makes it current.
+   *
+   * @return the new strategy or empty if the state is unknown or the chat is
+   * not registered
+   */
+  public synchronized Optional<ResponseStrategy> switchState(final long chatId, final String state) {
+    final Optional<ResponseStrategy> parsed = ResponseStrategies.parse(state);
+    if (!parsed.isPresent()) {
+      log.debug("Unknown state {} for chat {}", state, chatId);
+      return Optional.empty();
+    }
+    final ResponseStrategy strategy = parsed.get();
+    final Optional<ChatRecord> chat = chats.findById(chatId);
+    if (!chat.isPresent()) {
+      log.warn("Unable to switch state of unknown chat {}", chatId);
+      return Optional.empty();
+    }
+    final ChatStateRecord current = chat.get().getState() != null ?
+            chat.get().getState() : states.findByChatId(chat.get()).orElse(null);
+    final ChatStateRecord updated = states.save(current == null ?
+            new ChatStateRecord(chat.get(), strategy.state()) :
+            new ChatStateRecord(current, strategy.state()));
+    chats.save(new ChatRecord(chat.get(), updated));
+    strategies.put(chatId, strategy);
+    log.info("Switched chat {} to {}", chatId, strategy.state());
+    return parsed;
+  }
+
+  private ResponseStrategy load(final long chatId) {
+    return chats.findById(chatId)
+            .map(ChatRecord::getState)
+            .map(ChatStateRecord::getState)
+            .flatMap(state -> {
+              final Optional<ResponseStrategy> strategy = ResponseStrategies.parse(state);
+              if (!strategy.isPresent()) {
+                log.warn("Chat {} has unknown state {}, using default", chatId, state);
+              }
+              return strategy;
+            })
+            .orElseGet(ResponseStrategies::defaultStrategy);
+  }
+
+}
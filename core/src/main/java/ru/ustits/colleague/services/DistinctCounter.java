@@ -0,0 +1,78 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+import ru.ustits.colleague.tools.HyperLogLog;
+import ru.ustits.colleague.tools.Tokenizer;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Distinct senders and words per chat and day kept in {@link HyperLogLog}
+ * counters. Cardinalities of a period are estimated from the union of the
+ * daily counters, raw messages are never scanned.
+ *
+ * @author ustits
+ */
+@Component
+@RequiredArgsConstructor
+public class DistinctCounter implements MessageBatchHandler {
+
+  static final String USERS = "distinct_users";
+  static final String WORDS = "distinct_words";
+
+  private final SketchStore store;
+  private final Environment env;
+
+  @Override
+  public void handle(final List<MessageRecord> batch) {
+    final Tokenizer tokenizer = new Tokenizer();
+    SketchStore.byDay(batch).forEach((key, records) -> {
+      store.update(key.getChatId(), USERS, key.getDay(), data -> {
+        final HyperLogLog counter = counter(data);
+        for (final MessageRecord record : records) {
+          if (record.getUserId() != null) {
+            counter.add(record.getUserId());
+          }
+        }
+        return counter.toBytes();
+      });
+      store.update(key.getChatId(), WORDS, key.getDay(), data -> {
+        final HyperLogLog counter = counter(data);
+        for (final MessageRecord record : records) {
+          if (record.getText() != null) {
+            tokenizer.tokenize(record.getText(), counter::add);
+          }
+        }
+        return counter.toBytes();
+      });
+    });
+  }
+
+  public long users(final Long chatId, final LocalDate from, final LocalDate to) {
+    return estimate(chatId, USERS, from, to);
+  }
+
+  public long words(final Long chatId, final LocalDate from, final LocalDate to) {
+    return estimate(chatId, WORDS, from, to);
+  }
+
+  private long estimate(final Long chatId, final String kind, final LocalDate from, final LocalDate to) {
+    HyperLogLog union = null;
+    for (final byte[] data : store.load(chatId, kind, from, to)) {
+      final HyperLogLog counter = HyperLogLog.fromBytes(data);
+      union = union == null ? counter : union.merge(counter);
+    }
+    return union == null ? 0 : union.estimate();
+  }
+
+  private HyperLogLog counter(final byte[] data) {
+    return data == null ?
+            new HyperLogLog(env.getProperty("sketches.distinct.precision", Integer.class, 12)) :
+            HyperLogLog.fromBytes(data);
+  }
+
+}
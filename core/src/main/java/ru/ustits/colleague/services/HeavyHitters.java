@@ -0,0 +1,106 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+import ru.ustits.colleague.tools.SpaceSaving;
+import ru.ustits.colleague.tools.StopWords;
+import ru.ustits.colleague.tools.Tokenizer;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Approximate top words and senders per chat kept in fixed size
+ * {@link SpaceSaving} summaries, one per chat and day. Multi-day tops merge
+ * the daily summaries, so memory stays bounded however long the history is.
+ *
+ * @author ustits
+ */
+@Component
+@RequiredArgsConstructor
+public class HeavyHitters implements MessageBatchHandler {
+
+  static final String WORDS = "top_words";
+  static final String USERS = "top_users";
+
+  private static final int MAX_WORD_LENGTH = 64;
+
+  private final SketchStore store;
+  private final StopWordService stopWords;
+  private final Environment env;
+
+  @Override
+  public void handle(final List<MessageRecord> batch) {
+    final Tokenizer tokenizer = new Tokenizer();
+    SketchStore.byDay(batch).forEach((key, records) -> {
+      store.update(key.getChatId(), WORDS, key.getDay(), data -> {
+        final SpaceSaving summary = summary(data, wordsCapacity());
+        for (final MessageRecord record : records) {
+          if (record.getText() != null) {
+            tokenizer.tokenize(record.getText(), (word, length) -> {
+              if (length <= MAX_WORD_LENGTH) {
+                summary.add(new String(word, 0, length));
+              }
+            });
+          }
+        }
+        return summary.toBytes();
+      });
+      store.update(key.getChatId(), USERS, key.getDay(), data -> {
+        final SpaceSaving summary = summary(data, usersCapacity());
+        for (final MessageRecord record : records) {
+          if (record.getUserId() != null) {
+            summary.add(record.getUserId().toString());
+          }
+        }
+        return summary.toBytes();
+      });
+    });
+  }
+
+  /**
+   * @return most used words except stopwords, the count of every entry is at
+   * most its error above the real one
+   */
+  public List<SpaceSaving.Entry> topWords(final Long chatId, final LocalDate from, final LocalDate to,
+                                          final int limit) {
+    final StopWords excluded = stopWords.stopWords();
+    return merged(chatId, WORDS, from, to).top(Integer.MAX_VALUE).stream()
+            .filter(entry -> !excluded.contains(entry.getKey()))
+            .limit(limit)
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * @return most active senders, keys are user ids
+   */
+  public List<SpaceSaving.Entry> topUsers(final Long chatId, final LocalDate from, final LocalDate to,
+                                          final int limit) {
+    return merged(chatId, USERS, from, to).top(limit);
+  }
+
+  private SpaceSaving merged(final Long chatId, final String kind, final LocalDate from, final LocalDate to) {
+    SpaceSaving merged = null;
+    for (final byte[] data : store.load(chatId, kind, from, to)) {
+      final SpaceSaving summary = SpaceSaving.fromBytes(data);
+      merged = merged == null ? summary : merged.merge(summary);
+    }
+    return merged == null ? new SpaceSaving(1) : merged;
+  }
+
+  private int wordsCapacity() {
+    return env.getProperty("sketches.words.capacity", Integer.class, 1024);
+  }
+
+  private int usersCapacity() {
+    return env.getProperty("sketches.users.capacity", Integer.class, 256);
+  }
+
+  private static SpaceSaving summary(final byte[] data, final int capacity) {
+    return data == null ? new SpaceSaving(capacity) : SpaceSaving.fromBytes(data);
+  }
+
+}
@@ -0,0 +1,56 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import ru.ustits.colleague.repositories.IgnoreTriggerRepository;
+import ru.ustits.colleague.repositories.records.IgnoreTriggerRecord;
+import ru.ustits.colleague.tools.LongSet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Users whose messages do not fire triggers, kept as a {@link LongSet} per
+ * chat. A chat's set is loaded with one query on first use and replaced on
+ * every toggle, so checking a message is a hash probe without allocation.
+ *
+ * @author ustits
+ */
+@Log4j2
+@RequiredArgsConstructor
+public class IgnoreService {
+
+  private final IgnoreTriggerRepository repository;
+  private final ConcurrentMap<Long, LongSet> ignores = new ConcurrentHashMap<>();
+
+  public boolean isIgnored(final Long chatId, final Long userId) {
+    return userId != null && ignored(chatId).contains(userId);
+  }
+
+  /**
+   * @return true if the user is ignored after the toggle
+   */
+  public synchronized boolean toggle(final Long chatId, final Long userId) {
+    final LongSet current = ignored(chatId);
+    if (current.contains(userId)) {
+      repository.deleteByChatIdAndUserId(chatId, userId);
+      ignores.put(chatId, current.without(userId));
+      log.info("User {} is not ignored in chat {} anymore", userId, chatId);
+      return false;
+    } else {
+      repository.save(new IgnoreTriggerRecord(chatId, userId));
+      ignores.put(chatId, current.with(userId));
+      log.info("User {} is ignored in chat {}", userId, chatId);
+      return true;
+    }
+  }
+
+  private LongSet ignored(final Long chatId) {
+    final LongSet set = ignores.get(chatId);
+    if (set != null) {
+      return set;
+    }
+    return ignores.computeIfAbsent(chatId, id -> LongSet.of(repository.findUserIdsByChatId(id)));
+  }
+
+}
@@ -0,0 +1,26 @@
+package ru.ustits.colleague.services;
+
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import java.util.List;
+
+/**
+ * Derived data that is maintained while messages are ingested. Every batch
+ * is handed over after its messages are committed, inside a transaction of
+ * the handler's own, unless the handler is {@link #transactional()}.
+ *
+ * @author ustits
+ */
+public interface MessageBatchHandler {
+
+  void handle(final List<MessageRecord> batch);
+
+  /**
+   * @return true to handle the batch in the transaction inserting it, so the
+   * data is committed or rolled back together with the messages
+   */
+  default boolean transactional() {
+    return false;
+  }
+
+}
@@ -0,0 +1,125 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps per (chat, user, is_edited) message counters in sync with ingestion,
+ * they are updated in the transaction inserting the messages. Counters are
+ * recounted from the raw messages every {@code messages.counts.repair.days}
+ * days, unless raw messages expire after {@code messages.retention.days}
+ * and a recount would lose the expired ones.
+ *
+ * @author ustits
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class MessageCounter implements MessageBatchHandler {
+
+  private static final String UPSERT = "INSERT INTO message_counts (chat_id, user_id, is_edited, count) " +
+          "VALUES (?, ?, ?, ?) " +
+          "ON CONFLICT (chat_id, is_edited, user_id) DO UPDATE SET count = message_counts.count + EXCLUDED.count";
+  private static final Comparator<CountKey> ORDER = Comparator.comparing(CountKey::getChatId)
+          .thenComparing(CountKey::getIsEdited)
+          .thenComparing(CountKey::getUserId);
+
+  private final JdbcTemplate sql;
+  private final TransactionTemplate transactions;
+  private final Environment env;
+  private final ScheduledExecutorService repairs = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "message-counts-repair");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @PostConstruct
+  public void start() {
+    final int days = env.getProperty("messages.counts.repair.days", Integer.class, 7);
+    if (days <= 0) {
+      return;
+    }
+    if (env.getProperty("messages.retention.days", Integer.class, 0) > 0) {
+      log.warn("Raw messages expire, message counts are not repaired");
+      return;
+    }
+    repairs.scheduleWithFixedDelay(this::repair, days, days, TimeUnit.DAYS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    repairs.shutdownNow();
+  }
+
+  @Override
+  public void handle(final List<MessageRecord> batch) {
+    final Map<CountKey, Integer> counts = new TreeMap<>(ORDER);
+    for (final MessageRecord record : batch) {
+      counts.merge(new CountKey(record.getChatId(), record.getUserId(), record.getIsEdited()), 1, Integer::sum);
+    }
+    final List<Object[]> args = new ArrayList<>(counts.size());
+    counts.forEach((key, count) -> args.add(
+            new Object[]{key.getChatId(), key.getUserId(), key.getIsEdited(), count}));
+    sql.batchUpdate(UPSERT, args);
+  }
+
+  @Override
+  public boolean transactional() {
+    return true;
+  }
+
+  /**
+   * Recounts every chat from the raw messages, one chat per transaction that
+   * briefly blocks concurrent counter updates. Counters of existing
+   * databases are filled by a migration, this is for repairing them.
+   */
+  public void backfill() {
+    final List<Long> chats = sql.queryForList("SELECT id FROM chats", Long.class);
+    log.info("Backfilling message counts for {} chats", chats.size());
+    for (final Long chatId : chats) {
+      transactions.execute(status -> {
+        sql.execute("LOCK TABLE message_counts IN SHARE ROW EXCLUSIVE MODE");
+        sql.update("DELETE FROM message_counts WHERE chat_id=?", chatId);
+        return sql.update("INSERT INTO message_counts (chat_id, user_id, is_edited, count) " +
+                "SELECT chat_id, user_id, is_edited, count(*) FROM messages " +
+                "WHERE chat_id=? AND user_id IS NOT NULL " +
+                "GROUP BY chat_id, user_id, is_edited", chatId);
+      });
+    }
+    log.info("Message counts backfilled");
+  }
+
+  private void repair() {
+    try {
+      backfill();
+    } catch (DataAccessException e) {
+      log.error("Unable to repair message counts", e);
+    }
+  }
+
+  @Value
+  private static class CountKey {
+
+    private Long chatId;
+
+    private Long userId;
+
+    private Boolean isEdited;
+
+  }
+
+}
@@ -0,0 +1,24 @@
+package ru.ustits.colleague.services;
+
+import lombok.Value;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import java.util.Date;
+
+/**
+ * Position of a message in (date, id) order, used for keyset pagination.
+ *
+ * @author ustits
+ */
+@Value
+public final class MessageCursor {
+
+  private Date date;
+
+  private Integer id;
+
+  public static MessageCursor of(final MessageRecord record) {
+    return new MessageCursor(record.getDate(), record.getId());
+  }
+
+}
@@ -0,0 +1,84 @@
+package ru.ustits.colleague.services;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads a user's messages without materializing them. Streams are backed by
+ * a server-side cursor that fetches {@code fetchSize} rows at a time, pages
+ * are addressed by a {@link MessageCursor} instead of an offset.
+ *
+ * @author ustits
+ */
+@Log4j2
+public class MessageReader {
+
+  private static final String ALL_COLUMNS = "id, msg_id, date, text, is_edited, chat_id, user_id";
+  private static final RowMapper<MessageRecord> MESSAGE = (rs, row) -> new MessageRecord(
+          rs.getInt(1), rs.getLong(2), rs.getTimestamp(3), rs.getString(4),
+          rs.getBoolean(5), rs.getObject(6, Long.class), rs.getObject(7, Long.class));
+
+  private final JdbcTemplate sql;
+  private final TransactionTemplate transactions;
+  private final int fetchSize;
+
+  public MessageReader(final JdbcTemplate sql, final TransactionTemplate transactions, final int fetchSize) {
+    this.sql = sql;
+    this.transactions = new TransactionTemplate(transactions.getTransactionManager());
+    this.transactions.setReadOnly(true);
+    this.fetchSize = fetchSize;
+  }
+
+  public void forEach(final Long userId, final Long chatId, final Consumer<MessageRecord> consumer) {
+    stream(ALL_COLUMNS, userId, chatId, MESSAGE, consumer);
+  }
+
+  public void forEachText(final Long userId, final Long chatId, final Consumer<String> consumer) {
+    stream("text", userId, chatId, (rs, row) -> rs.getString(1), consumer);
+  }
+
+  public void forEachDate(final Long userId, final Long chatId, final Consumer<Timestamp> consumer) {
+    stream("date", userId, chatId, (rs, row) -> rs.getTimestamp(1), consumer);
+  }
+
+  public List<MessageRecord> page(final Long userId, final Long chatId, final int limit) {
+    return sql.query("SELECT " + ALL_COLUMNS + " FROM messages " +
+                    "WHERE chat_id=? AND user_id=? " +
+                    "ORDER BY date, id LIMIT ?",
+            MESSAGE, chatId, userId, limit);
+  }
+
+  public List<MessageRecord> page(final Long userId, final Long chatId, final MessageCursor after,
+                                  final int limit) {
+    return sql.query("SELECT " + ALL_COLUMNS + " FROM messages " +
+                    "WHERE chat_id=? AND user_id=? AND (date, id) > (?, ?) " +
+                    "ORDER BY date, id LIMIT ?",
+            MESSAGE, chatId, userId, new Timestamp(after.getDate().getTime()), after.getId(), limit);
+  }
+
+  private <T> void stream(final String columns, final Long userId, final Long chatId,
+                          final RowMapper<T> mapper, final Consumer<T> consumer) {
+    final String query = "SELECT " + columns + " FROM messages WHERE chat_id=? AND user_id=?";
+    transactions.execute(status -> {
+      sql.query(connection -> {
+        final PreparedStatement statement = connection.prepareStatement(query);
+        statement.setFetchSize(fetchSize);
+        statement.setLong(1, chatId);
+        statement.setLong(2, userId);
+        return statement;
+      }, (RowCallbackHandler) rs -> consumer.accept(mapper.mapRow(rs, rs.getRow())));
+      return null;
+    });
+    log.debug("Streamed {} of user {} in chat {}", columns, userId, chatId);
+  }
+
+}
@@ -4,13 +4,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
-import org.telegram.telegrambots.api.objects.Chat;
 import org.telegram.telegrambots.api.objects.Message;
-import org.telegram.telegrambots.api.objects.User;
-import ru.ustits.colleague.repositories.ChatsRepository;
 import ru.ustits.colleague.repositories.MessageRepository;
-import ru.ustits.colleague.repositories.UserRepository;
-import ru.ustits.colleague.repositories.records.ChatRecord;
 import ru.ustits.colleague.repositories.records.MessageRecord;
 import ru.ustits.colleague.repositories.records.UserRecord;
 
@@ -31,57 +26,51 @@ public final class MessageService {
 
   private final JdbcTemplate sql;
   private final MessageRepository messageRepository;
-  private final ChatsRepository chatsRepository;
-  private final UserRepository userRepository;
+  private final MessageWriter messageWriter;
+  private final RegistrationService registrationService;
 
-  public Map<String, Integer> count(final Long chatId, final boolean isEdited) {
-    final Map<String, Integer> counts = new LinkedHashMap<>();
-    return sql.query("SELECT users.first_name, count(*) as messages_count " +
-                    "FROM messages " +
-                    "INNER JOIN users ON (messages.user_id = users.id) " +
-                    "WHERE messages.chat_id=? AND messages.is_edited=? " +
-                    "GROUP BY users.first_name " +
-                    "ORDER BY messages_count DESC",
+  public Map<UserRecord, Integer> count(final Long chatId, final boolean isEdited) {
+    final Map<UserRecord, Integer> counts = new LinkedHashMap<>();
+    return sql.query("SELECT users.id, users.first_name, users.last_name, users.user_name, " +
+                    "message_counts.count " +
+                    "FROM message_counts " +
+                    "INNER JOIN users ON (message_counts.user_id = users.id) " +
+                    "WHERE message_counts.chat_id=? AND message_counts.is_edited=? " +
+                    "ORDER BY message_counts.count DESC",
             new Object[]{chatId, isEdited},
             rs -> {
               while (rs.next()) {
-                final String name = rs.getString(1);
-                final int count = rs.getInt(2);
-                counts.put(name, count);
+                final UserRecord user = new UserRecord(rs.getLong(1), rs.getString(2),
+                        rs.getString(3), rs.getString(4));
+                counts.put(user, rs.getInt(5));
               }
               log.info("Fetched: {}", counts);
               return counts;
             });
   }
 
+  /**
+   * @deprecated loads every message of the user into memory, stream them
+   * with {@link MessageReader#forEach} or read them page by page instead
+   */
+  @Deprecated
   public List<MessageRecord> messagesForUser(final Long userId, final Long chatId) {
     return messageRepository.findAllByUserIdAndChatId(userId, chatId);
   }
 
   public MessageRecord addMessage(final Message message) {
-    final Chat chat = message.getChat();
-    final Long chatId = chat.getId();
-    final ChatRecord chatRecord = new ChatRecord(chatId, chat.getTitle());
-    if (!chatsRepository.existsById(chatId)) {
-      chatsRepository.save(chatRecord);
-    }
-
-    final User user = message.getFrom();
-    final Long userId = toUnsignedLong(user.getId());
-    final UserRecord userRecord = new UserRecord(userId, user.getFirstName(),
-            user.getLastName(), user.getUserName());
-    if (!userRepository.existsById(userId)) {
-      userRepository.save(userRecord);
-    }
+    final Long chatId = registrationService.register(message.getChat());
+    final Long userId = registrationService.register(message.getFrom());
     final MessageRecord messageRecord =
             new MessageRecord(
                     toUnsignedLong(message.getMessageId()),
                     new Date((long) message.getDate() * 1000),
                     message.getText(),
                     message.getEditDate() != null,
-                    chat.getId(),
-                    toUnsignedLong(user.getId()));
-    return messageRepository.save(messageRecord);
+                    chatId,
+                    userId);
+    messageWriter.enqueue(messageRecord);
+    return messageRecord;
   }
 
 }
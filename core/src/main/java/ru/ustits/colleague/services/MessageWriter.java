@@ -0,0 +1,302 @@
+package ru.ustits.colleague.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Write-behind buffer for incoming messages. Records are queued by the caller
+ * and written by a single background thread as JDBC batches, either when
+ * {@code batchSize} records are pending or every {@code flushInterval} millis.
+ * The caller never waits for the database, a message that does not fit into
+ * the queue of {@code capacity} records is dropped and counted.
+ * Each batch is inserted in its own transaction together with the updates of
+ * {@link MessageBatchHandler#transactional() transactional} handlers, then
+ * every other handler updates its derived data in a separate one, so such a
+ * handler may lose its update of the batch but never the messages.
+ * <p>
+ * A failed batch is kept at the head of the retries and retried with
+ * exponential backoff, new messages wait in the queue meanwhile. Retries
+ * hold at most {@code capacity} messages as well. Failures of the connection or transaction are
+ * retried until the database is back. Other failures split the batch in
+ * halves to isolate the offending message, which is logged and skipped
+ * after {@value #MAX_FAILURES} failures of its own.
+ *
+ * @author ustits
+ */
+@Log4j2
+public class MessageWriter {
+
+  private static final String INSERT = "INSERT INTO messages (msg_id, date, text, is_edited, chat_id, user_id) " +
+          "VALUES (?, ?, ?, ?, ?, ?)";
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+  private static final long MAX_BACKOFF_MILLIS = 60_000;
+  private static final int MAX_FAILURES = 3;
+
+  private final JdbcTemplate sql;
+  private final TransactionTemplate transactions;
+  private final List<MessageBatchHandler> handlers;
+  private final BlockingQueue<MessageRecord> queue;
+  private final int capacity;
+  private final int batchSize;
+  private final long flushInterval;
+  private final ScheduledExecutorService executor;
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final Deque<Retry> retries = new ConcurrentLinkedDeque<>();
+  private final LongSupplier clock;
+  private final Timer flushTimer;
+  private final Counter skipped;
+  private final Counter dropped;
+  private final Counter handlerErrors;
+
+  public MessageWriter(final JdbcTemplate sql, final TransactionTemplate transactions,
+                       final List<MessageBatchHandler> handlers, final MeterRegistry registry,
+                       final int capacity, final int batchSize, final long flushInterval) {
+    this(sql, transactions, handlers, registry, capacity, batchSize, flushInterval, System::nanoTime);
+  }
+
+  MessageWriter(final JdbcTemplate sql, final TransactionTemplate transactions,
+                final List<MessageBatchHandler> handlers, final MeterRegistry registry,
+                final int capacity, final int batchSize, final long flushInterval, final LongSupplier clock) {
+    this.sql = sql;
+    this.transactions = transactions;
+    this.handlers = handlers;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+    this.flushInterval = flushInterval;
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "message-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.clock = clock;
+    this.flushTimer = registry.timer("messages.flush");
+    this.skipped = registry.counter("messages.skipped");
+    this.dropped = registry.counter("messages.dropped");
+    this.handlerErrors = registry.counter("messages.handler.errors");
+    registry.gauge("messages.queue.depth", queue, BlockingQueue::size);
+    registry.gauge("messages.retry.depth", retries, Deque::size);
+  }
+
+  @PostConstruct
+  public void start() {
+    executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+  }
+
+  public void enqueue(final MessageRecord record) {
+    if (!queue.offer(record)) {
+      log.warn("Message queue is full, dropping message {} of chat {}", record.getMessageId(), record.getChatId());
+      dropped.increment();
+      return;
+    }
+    if (queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::flush);
+      } catch (RejectedExecutionException e) {
+        log.debug("Writer is closing, message will be flushed on shutdown");
+      }
+    }
+  }
+
+  /**
+   * @return messages not written yet, including the ones waiting for a retry
+   */
+  public int pending() {
+    return queue.size() + retained();
+  }
+
+  private int retained() {
+    int retained = 0;
+    for (final Retry retry : retries) {
+      retained += retry.batch.size();
+    }
+    return retained;
+  }
+
+  /**
+   * Runs on the background thread, on shutdown and in tests, so it is
+   * serialized to keep failed batches in order.
+   */
+  synchronized void flush() {
+    flushRequested.set(false);
+    if (!retry()) {
+      return;
+    }
+    List<MessageRecord> batch = new ArrayList<>(batchSize);
+    while (queue.drainTo(batch, batchSize) > 0) {
+      if (!write(batch, 0, 0)) {
+        return;
+      }
+      batch = new ArrayList<>(batchSize);
+    }
+  }
+
+  /**
+   * Writes failed batches that are due.
+   *
+   * @return true when no failed batches are left
+   */
+  private boolean retry() {
+    Retry retry;
+    while ((retry = retries.peek()) != null) {
+      if (retry.due - clock.getAsLong() > 0) {
+        return false;
+      }
+      retries.poll();
+      if (!write(retry.batch, retry.attempts, retry.failures)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param attempts previous attempts to write the batch
+   * @param failures previous failures not caused by the database being
+   *                 unavailable
+   * @return false if the batch failed and is kept for a retry
+   */
+  private boolean write(final List<MessageRecord> batch, final int attempts, final int failures) {
+    try {
+      flushTimer.record(() -> transactions.execute(status -> {
+        insert(batch);
+        for (final MessageBatchHandler handler : handlers) {
+          if (handler.transactional()) {
+            handler.handle(batch);
+          }
+        }
+        return batch.size();
+      }));
+      log.debug("Flushed {} messages", batch.size());
+    } catch (RuntimeException e) {
+      final long due = clock.getAsLong() + backoff(attempts);
+      if (unavailable(e)) {
+        log.error("Unable to write " + batch.size() + " messages, retrying after " + (attempts + 1) +
+                " attempts", e);
+        keep(new Retry(batch, due, attempts + 1, failures));
+      } else if (batch.size() > 1) {
+        log.error("Unable to write " + batch.size() + " messages, retrying in halves", e);
+        final int half = batch.size() / 2;
+        keep(new Retry(new ArrayList<>(batch.subList(0, half)), due, attempts + 1, failures + 1),
+                new Retry(new ArrayList<>(batch.subList(half, batch.size())), due, attempts + 1, failures + 1));
+      } else if (failures + 1 < MAX_FAILURES) {
+        log.error("Unable to write message " + batch.get(0) + ", retrying", e);
+        keep(new Retry(batch, due, attempts + 1, failures + 1));
+      } else {
+        log.error("Skipping message " + batch.get(0) + " after " + (failures + 1) + " failures", e);
+        skipped.increment();
+        return true;
+      }
+      return false;
+    }
+    handle(batch);
+    return true;
+  }
+
+  /**
+   * Puts failed batches back at the head of the retries in their order, so
+   * they are written before the ones that failed after them. Batches that
+   * would take the retries above {@code capacity} messages are dropped.
+   */
+  private void keep(final Retry... failed) {
+    for (int i = failed.length - 1; i >= 0; i--) {
+      final int size = failed[i].batch.size();
+      if (retained() + size > capacity) {
+        log.error("Retries are full, dropping {} messages", size);
+        dropped.increment(size);
+      } else {
+        retries.addFirst(failed[i]);
+      }
+    }
+  }
+
+  private void handle(final List<MessageRecord> batch) {
+    for (final MessageBatchHandler handler : handlers) {
+      if (handler.transactional()) {
+        continue;
+      }
+      try {
+        transactions.execute(status -> {
+          handler.handle(batch);
+          return null;
+        });
+      } catch (RuntimeException e) {
+        log.error(handler.getClass().getSimpleName() + " is unable to handle " + batch.size() + " messages", e);
+        handlerErrors.increment();
+      }
+    }
+  }
+
+  private long backoff(final int attempts) {
+    final long millis = Math.min(flushInterval << Math.min(attempts, 16), MAX_BACKOFF_MILLIS);
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  private static boolean unavailable(final RuntimeException e) {
+    return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException ||
+            e instanceof DataAccessResourceFailureException || e instanceof TransactionException;
+  }
+
+  private void insert(final List<MessageRecord> batch) {
+    sql.batchUpdate(INSERT, batch, batchSize, (statement, record) -> {
+      statement.setLong(1, record.getMessageId());
+      statement.setTimestamp(2, new Timestamp(record.getDate().getTime()));
+      statement.setString(3, record.getText());
+      statement.setBoolean(4, record.getIsEdited());
+      statement.setLong(5, record.getChatId());
+      statement.setLong(6, record.getUserId());
+    });
+  }
+
+  @PreDestroy
+  public void close() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    if (pending() > 0) {
+      log.error("Message writer closed with {} unwritten messages", pending());
+    } else {
+      log.info("Message writer closed");
+    }
+  }
+
+  private static final class Retry {
+
+    private final List<MessageRecord> batch;
+    private final long due;
+    private final int attempts;
+    private final int failures;
+
+    private Retry(final List<MessageRecord> batch, final long due, final int attempts, final int failures) {
+      this.batch = batch;
+      this.due = due;
+      this.attempts = attempts;
+      this.failures = failures;
+    }
+
+  }
+
+}
@@ -0,0 +1,24 @@
+package ru.ustits.colleague.services;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintenance of message partitions. It is not scanned with the rest of the
+ * components, bots sharing a database would all create and drop the same
+ * partitions, so exactly one of them imports this class into its
+ * configuration.
+ *
+ * @author ustits
+ */
+public class PartitionConfig {
+
+  @Bean
+  public PartitionManager partitionManager(final JdbcTemplate sql, final TransactionTemplate transactions,
+                                           final Environment env) {
+    return new PartitionManager(sql, transactions, env);
+  }
+
+}
@@ -0,0 +1,168 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains monthly range partitions of {@code messages}: creates partitions
+ * {@code messages.partitions.ahead} months in advance and drops the ones
+ * that end before {@code messages.retention.days}. Retention is kept at
+ * partition granularity, rows of a partially expired month stay until the
+ * whole month expires. It is declared by {@link PartitionConfig}, which
+ * only the bot that maintains the shared database imports.
+ *
+ * @author ustits
+ */
+@Log4j2
+@RequiredArgsConstructor
+public class PartitionManager {
+
+  private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+  private static final String DEFAULT_PARTITION = "messages_default";
+  private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'messages_'yyyy_MM");
+
+  private final JdbcTemplate sql;
+  private final TransactionTemplate transactions;
+  private final Environment env;
+  private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "message-partitions");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @PostConstruct
+  public void start() {
+    if (!isPartitioned()) {
+      log.warn("Messages table is not partitioned, partition maintenance is disabled");
+      return;
+    }
+    maintenance.scheduleWithFixedDelay(this::maintain, 0, 1, TimeUnit.DAYS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    maintenance.shutdownNow();
+  }
+
+  public boolean isPartitioned() {
+    return Boolean.TRUE.equals(sql.queryForObject(
+            "SELECT relkind = 'p' FROM pg_class WHERE oid = 'messages'::regclass", Boolean.class));
+  }
+
+  /**
+   * Creates missing monthly partitions from the end of the last existing one
+   * up to and including the month {@code ahead} months from now, months
+   * between a last partition that already ended and now included. Rows of the
+   * month that already landed in the default partition are moved into the
+   * new one, Postgres refuses to attach a range the default partition has
+   * rows for.
+   */
+  public int createPartitions(final int ahead) {
+    final LocalDate current = LocalDate.now().withDayOfMonth(1);
+    final Map<String, LocalDateTime> existing = partitions();
+    LocalDate month = existing.values().stream()
+            .map(LocalDateTime::toLocalDate)
+            .max(LocalDate::compareTo)
+            .orElse(current);
+    int created = 0;
+    for (; !month.isAfter(current.plusMonths(ahead)); month = month.plusMonths(1)) {
+      final String name = month.format(NAME);
+      if (existing.containsKey(name)) {
+        continue;
+      }
+      try {
+        final int moved = createPartition(name, month, month.plusMonths(1));
+        if (moved > 0) {
+          log.warn("Moved {} messages from the default partition to {}", moved, name);
+        }
+        created++;
+      } catch (DataAccessException e) {
+        log.error("Unable to create partition " + name, e);
+      }
+    }
+    return created;
+  }
+
+  private int createPartition(final String name, final LocalDate from, final LocalDate to) {
+    return transactions.execute(status -> {
+      sql.execute(String.format("CREATE TABLE %s (LIKE messages INCLUDING DEFAULTS INCLUDING CONSTRAINTS)", name));
+      final int moved = sql.update(String.format("WITH moved AS (DELETE FROM %s WHERE date >= ? AND date < ? " +
+              "RETURNING *) INSERT INTO %s SELECT * FROM moved", DEFAULT_PARTITION, name),
+              Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay()));
+      sql.execute(String.format("ALTER TABLE messages ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')",
+              name, from, to));
+      return moved;
+    });
+  }
+
+  /**
+   * Detaches and drops every partition whose upper bound is not after
+   * {@code before}.
+   */
+  public int dropPartitions(final LocalDateTime before) {
+    int dropped = 0;
+    for (final Map.Entry<String, LocalDateTime> partition : partitions().entrySet()) {
+      if (!partition.getValue().isAfter(before)) {
+        final String name = partition.getKey();
+        transactions.execute(status -> {
+          sql.execute("ALTER TABLE messages DETACH PARTITION " + name);
+          sql.execute("DROP TABLE " + name);
+          return null;
+        });
+        log.info("Dropped partition {}", name);
+        dropped++;
+      }
+    }
+    return dropped;
+  }
+
+  /**
+   * @return upper bounds of the range partitions of {@code messages} by name,
+   * the default partition is not included
+   */
+  Map<String, LocalDateTime> partitions() {
+    final Map<String, LocalDateTime> partitions = new LinkedHashMap<>();
+    sql.query("SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+                    "INNER JOIN pg_class c ON (c.oid = i.inhrelid) " +
+                    "WHERE i.inhparent = 'messages'::regclass ORDER BY c.relname",
+            rs -> {
+              final Matcher matcher = UPPER_BOUND.matcher(rs.getString(2));
+              if (matcher.find()) {
+                partitions.put(rs.getString(1), Timestamp.valueOf(matcher.group(1)).toLocalDateTime());
+              }
+            });
+    return partitions;
+  }
+
+  private void maintain() {
+    try {
+      final int created = createPartitions(env.getProperty("messages.partitions.ahead", Integer.class, 2));
+      log.info("Ensured {} upcoming message partitions", created);
+      final int days = env.getProperty("messages.retention.days", Integer.class, 0);
+      if (days > 0) {
+        dropPartitions(LocalDateTime.now().minusDays(days));
+      }
+    } catch (DataAccessException e) {
+      log.error("Unable to maintain message partitions", e);
+    }
+  }
+
+}
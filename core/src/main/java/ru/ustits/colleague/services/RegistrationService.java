@@ -0,0 +1,67 @@
+package ru.ustits.colleague.services;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.api.objects.Chat;
+import org.telegram.telegrambots.api.objects.User;
+import ru.ustits.colleague.repositories.ChatsRepository;
+import ru.ustits.colleague.repositories.UserRepository;
+import ru.ustits.colleague.repositories.records.ChatRecord;
+import ru.ustits.colleague.repositories.records.UserRecord;
+
+import static java.lang.Integer.toUnsignedLong;
+
+/**
+ * Makes sure chats and users are stored before anything references them.
+ * Records recently upserted by this process are remembered in the
+ * {@value #CHATS} and {@value #USERS} caches, so only new, renamed or
+ * evicted chats and users cost a query.
+ *
+ * @author ustits
+ */
+@Log4j2
+@Component
+public class RegistrationService {
+
+  static final String CHATS = "registered_chats";
+  static final String USERS = "registered_users";
+
+  private final ChatsRepository chatsRepository;
+  private final UserRepository userRepository;
+  private final Cache chats;
+  private final Cache users;
+
+  public RegistrationService(final ChatsRepository chatsRepository, final UserRepository userRepository,
+                             final CacheManager cacheManager) {
+    this.chatsRepository = chatsRepository;
+    this.userRepository = userRepository;
+    this.chats = cacheManager.getCache(CHATS);
+    this.users = cacheManager.getCache(USERS);
+  }
+
+  public Long register(final Chat chat) {
+    final Long chatId = chat.getId();
+    final ChatRecord record = new ChatRecord(chatId, chat.getTitle());
+    if (!record.equals(chats.get(chatId, ChatRecord.class))) {
+      chatsRepository.upsert(chatId, record.getTitle());
+      chats.put(chatId, record);
+      log.debug("Registered chat {}", chatId);
+    }
+    return chatId;
+  }
+
+  public Long register(final User user) {
+    final Long userId = toUnsignedLong(user.getId());
+    final UserRecord record = new UserRecord(userId, user.getFirstName(),
+            user.getLastName(), user.getUserName());
+    if (!record.equals(users.get(userId, UserRecord.class))) {
+      userRepository.upsert(userId, record.getFirstName(), record.getLastName(), record.getUserName());
+      users.put(userId, record);
+      log.debug("Registered user {}", userId);
+    }
+    return userId;
+  }
+
+}
@@ -0,0 +1,89 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Per chat and day storage of serialized sketches in {@code chat_sketches}.
+ * Updates lock the row, so they must run inside a transaction.
+ *
+ * @author ustits
+ */
+@Component
+@RequiredArgsConstructor
+public class SketchStore {
+
+  private static final Comparator<DayKey> ORDER = Comparator.comparing(DayKey::getChatId)
+          .thenComparing(DayKey::getDay);
+
+  private final JdbcTemplate sql;
+
+  /**
+   * Groups new messages by chat and day in the order sketch rows are locked.
+   * Edited messages are skipped.
+   */
+  public static Map<DayKey, List<MessageRecord>> byDay(final List<MessageRecord> batch) {
+    final Map<DayKey, List<MessageRecord>> days = new TreeMap<>(ORDER);
+    for (final MessageRecord record : batch) {
+      if (!record.getIsEdited()) {
+        days.computeIfAbsent(new DayKey(record.getChatId(), day(record.getDate())), key -> new ArrayList<>())
+                .add(record);
+      }
+    }
+    return days;
+  }
+
+  public static LocalDate day(final java.util.Date date) {
+    return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+  }
+
+  /**
+   * Replaces the stored sketch with the result of {@code update}, which
+   * receives {@code null} when there is no sketch for the day yet.
+   */
+  public void update(final Long chatId, final String kind, final LocalDate day,
+                     final UnaryOperator<byte[]> update) {
+    final Date date = Date.valueOf(day);
+    while (true) {
+      final List<byte[]> current = sql.queryForList("SELECT data FROM chat_sketches " +
+              "WHERE chat_id=? AND kind=? AND day=? FOR UPDATE", byte[].class, chatId, kind, date);
+      if (!current.isEmpty()) {
+        sql.update("UPDATE chat_sketches SET data=? WHERE chat_id=? AND kind=? AND day=?",
+                update.apply(current.get(0)), chatId, kind, date);
+        return;
+      }
+      final int inserted = sql.update("INSERT INTO chat_sketches (chat_id, kind, day, data) VALUES (?, ?, ?, ?) " +
+              "ON CONFLICT (chat_id, kind, day) DO NOTHING", chatId, kind, date, update.apply(null));
+      if (inserted > 0) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return sketches of the days from {@code from} to {@code to} inclusive
+   */
+  public List<byte[]> load(final Long chatId, final String kind, final LocalDate from, final LocalDate to) {
+    return sql.queryForList("SELECT data FROM chat_sketches WHERE chat_id=? AND kind=? AND day >= ? AND day <= ?",
+            byte[].class, chatId, kind, Date.valueOf(from), Date.valueOf(to));
+  }
+
+  @Value
+  public static class DayKey {
+
+    private Long chatId;
+
+    private LocalDate day;
+
+  }
+
+}
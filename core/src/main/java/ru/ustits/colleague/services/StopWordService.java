@@ -0,0 +1,53 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import ru.ustits.colleague.repositories.StopWordRepository;
+import ru.ustits.colleague.repositories.records.StopWordRecord;
+import ru.ustits.colleague.tools.StopWords;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles stopwords into a {@link StopWords} set. The set is rebuilt only
+ * when the cached result of {@link StopWordRepository#findAll()} is replaced,
+ * which happens after stopwords are saved or deleted.
+ *
+ * @author ustits
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class StopWordService {
+
+  private final StopWordRepository repository;
+
+  private volatile Compiled compiled;
+
+  public StopWords stopWords() {
+    final Iterable<StopWordRecord> records = repository.findAll();
+    final Compiled current = compiled;
+    if (current != null && current.getSource() == records) {
+      return current.getWords();
+    }
+    final List<String> words = new ArrayList<>();
+    records.forEach(record -> words.add(record.getWord()));
+    final StopWords stopWords = StopWords.of(words);
+    compiled = new Compiled(records, stopWords);
+    log.debug("Compiled {} stopwords", stopWords.size());
+    return stopWords;
+  }
+
+  @Value
+  private static class Compiled {
+
+    private Iterable<StopWordRecord> source;
+
+    private StopWords words;
+
+  }
+
+}
@@ -0,0 +1,111 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.env.Environment;
+import ru.ustits.colleague.repositories.TriggerRepository;
+import ru.ustits.colleague.repositories.records.TriggerRecord;
+import ru.ustits.colleague.triggers.TriggerMatcher;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an immutable {@link TriggerMatcher} snapshot per chat. Messages are
+ * matched against the current snapshot without locks or database access.
+ * Trigger changes schedule a rebuild of the chat's snapshot on a background
+ * thread after {@code triggers.rebuild.delay} milliseconds, so a burst of
+ * changes in one chat is compiled once.
+ *
+ * @author ustits
+ */
+@Log4j2
+@RequiredArgsConstructor
+public class TriggerService {
+
+  private final TriggerRepository repository;
+  private final Environment env;
+  private final ConcurrentMap<Long, TriggerMatcher> snapshots = new ConcurrentHashMap<>();
+  private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService rebuilds = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "trigger-rebuild");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * @return triggers of the chat contained in the text, ordered by their
+   * first occurrence
+   */
+  public List<TriggerRecord> match(final Long chatId, final String text) {
+    return snapshot(chatId).match(text);
+  }
+
+  public TriggerMatcher snapshot(final Long chatId) {
+    final TriggerMatcher snapshot = snapshots.get(chatId);
+    if (snapshot != null) {
+      return snapshot;
+    }
+    final TriggerMatcher loaded = compile(chatId);
+    final TriggerMatcher current = snapshots.putIfAbsent(chatId, loaded);
+    return current == null ? loaded : current;
+  }
+
+  public TriggerRecord add(final TriggerRecord trigger) {
+    final TriggerRecord saved = repository.save(trigger);
+    refresh(trigger.getChatId());
+    return saved;
+  }
+
+  public void remove(final String trigger, final Long chatId, final Long userId) {
+    repository.deleteByTriggerAndChatIdAndUserId(trigger, chatId, userId);
+    refresh(chatId);
+  }
+
+  public void remove(final Integer id, final Long chatId) {
+    repository.deleteByIdAndChatId(id, chatId);
+    refresh(chatId);
+  }
+
+  /**
+   * Schedules a rebuild of the chat's snapshot unless one is already pending.
+   */
+  public void refresh(final Long chatId) {
+    if (!pending.add(chatId)) {
+      return;
+    }
+    rebuilds.schedule(() -> rebuild(chatId), delay(), TimeUnit.MILLISECONDS);
+  }
+
+  void rebuild(final Long chatId) {
+    pending.remove(chatId);
+    try {
+      snapshots.put(chatId, compile(chatId));
+    } catch (RuntimeException e) {
+      log.error("Unable to rebuild triggers of chat " + chatId + ", reloading on next message", e);
+      snapshots.remove(chatId);
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    rebuilds.shutdownNow();
+  }
+
+  private TriggerMatcher compile(final Long chatId) {
+    final TriggerMatcher matcher = new TriggerMatcher(repository.findAllByChatId(chatId));
+    log.debug("Compiled {} triggers of chat {}", matcher.size(), chatId);
+    return matcher;
+  }
+
+  private long delay() {
+    return env.getProperty("triggers.rebuild.delay", Long.class, 500L);
+  }
+
+}
@@ -0,0 +1,204 @@
+package ru.ustits.colleague.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+import ru.ustits.colleague.tools.StopWords;
+import ru.ustits.colleague.tools.Tokenizer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental per-chat word frequencies, optionally split by user when
+ * {@code words.per.user} is set. Edited messages are not counted again.
+ * Messages that existed before the index was created are counted by a
+ * background backfill that resumes from its last committed chunk. A chunk
+ * holds locks on the counters it updates until it commits, and ingestion
+ * waits for them, so chunks are small, {@code words.backfill.chunk}
+ * messages, and {@code words.backfill.pause} millis apart.
+ *
+ * @author ustits
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class WordCounter implements MessageBatchHandler {
+
+  private static final String UPSERT = "INSERT INTO word_counts (chat_id, word, count) VALUES (?, ?, ?) " +
+          "ON CONFLICT (chat_id, word) DO UPDATE SET count = word_counts.count + EXCLUDED.count";
+  private static final String USER_UPSERT = "INSERT INTO user_word_counts (chat_id, user_id, word, count) " +
+          "VALUES (?, ?, ?, ?) " +
+          "ON CONFLICT (chat_id, user_id, word) DO UPDATE SET count = user_word_counts.count + EXCLUDED.count";
+  private static final Comparator<WordKey> ORDER = Comparator.comparing(WordKey::getChatId)
+          .thenComparing(WordKey::getUserId)
+          .thenComparing(WordKey::getWord);
+  private static final long ANY_USER = 0L;
+  private static final int MAX_WORD_LENGTH = 64;
+
+  private final JdbcTemplate sql;
+  private final TransactionTemplate transactions;
+  private final StopWordService stopWords;
+  private final Environment env;
+  private final ExecutorService backfill = Executors.newSingleThreadExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "word-backfill");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @Override
+  public void handle(final List<MessageRecord> batch) {
+    final Counts counts = new Counts(perUser());
+    for (final MessageRecord record : batch) {
+      if (!record.getIsEdited()) {
+        counts.add(record.getChatId(), record.getUserId(), record.getText());
+      }
+    }
+    counts.write();
+  }
+
+  public Map<String, Long> top(final Long chatId, final int limit) {
+    return top("SELECT word, count FROM word_counts WHERE chat_id=? ORDER BY count DESC LIMIT ?",
+            limit, chatId);
+  }
+
+  public Map<String, Long> top(final Long chatId, final Long userId, final int limit) {
+    return top("SELECT word, count FROM user_word_counts WHERE chat_id=? AND user_id=? " +
+            "ORDER BY count DESC LIMIT ?", limit, chatId, userId);
+  }
+
+  private Map<String, Long> top(final String query, final int limit, final Object... args) {
+    final StopWords excluded = stopWords.stopWords();
+    final Object[] params = Arrays.copyOf(args, args.length + 1);
+    params[args.length] = limit + excluded.size();
+    final Map<String, Long> top = new LinkedHashMap<>();
+    sql.query(query, params, (RowCallbackHandler) rs -> {
+      final String word = rs.getString(1);
+      if (top.size() < limit && !excluded.contains(word)) {
+        top.put(word, rs.getLong(2));
+      }
+    });
+    return top;
+  }
+
+  @PostConstruct
+  public void start() {
+    final long pause = env.getProperty("words.backfill.pause", Long.class, 100L);
+    backfill.execute(() -> {
+      try {
+        while (backfillChunk()) {
+          log.debug("Word counts backfill chunk committed");
+          TimeUnit.MILLISECONDS.sleep(pause);
+        }
+      } catch (DataAccessException e) {
+        log.error("Word counts backfill stopped, it will resume on next start", e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+  }
+
+  @PreDestroy
+  public void stop() {
+    backfill.shutdownNow();
+  }
+
+  /**
+   * Counts the next chunk of messages below the backfill boundary and moves
+   * the position in the same transaction, so a chunk is never counted twice.
+   *
+   * @return false when there is nothing left to backfill
+   */
+  public boolean backfillChunk() {
+    final int chunk = env.getProperty("words.backfill.chunk", Integer.class, 500);
+    final Boolean more = transactions.execute(status -> {
+      final int[] progress = sql.queryForObject(
+              "SELECT position, boundary FROM word_counts_backfill FOR UPDATE",
+              (rs, rowNum) -> new int[]{rs.getInt(1), rs.getInt(2)});
+      final int position = progress[0];
+      final int boundary = progress[1];
+      if (position >= boundary) {
+        return false;
+      }
+      final int upper = (int) Math.min((long) position + chunk, boundary);
+      final Counts counts = new Counts(perUser());
+      sql.query("SELECT chat_id, user_id, text FROM messages WHERE id > ? AND id <= ? AND NOT is_edited",
+              new Object[]{position, upper},
+              (RowCallbackHandler) rs -> counts.add(rs.getLong(1), (Long) rs.getObject(2), rs.getString(3)));
+      counts.write();
+      sql.update("UPDATE word_counts_backfill SET position=?", upper);
+      if (upper == boundary) {
+        log.info("Word counts backfilled up to message {}", boundary);
+      }
+      return upper < boundary;
+    });
+    return Boolean.TRUE.equals(more);
+  }
+
+  private boolean perUser() {
+    return env.getProperty("words.per.user", Boolean.class, false);
+  }
+
+  private final class Counts {
+
+    private final Tokenizer tokenizer = new Tokenizer();
+    private final Map<WordKey, Integer> chats = new TreeMap<>(ORDER);
+    private final Map<WordKey, Integer> users = new TreeMap<>(ORDER);
+    private final boolean perUser;
+
+    private Counts(final boolean perUser) {
+      this.perUser = perUser;
+    }
+
+    void add(final Long chatId, final Long userId, final String text) {
+      if (text == null) {
+        return;
+      }
+      tokenizer.tokenize(text, (word, length) -> {
+        if (length <= MAX_WORD_LENGTH) {
+          final String token = new String(word, 0, length);
+          chats.merge(new WordKey(chatId, ANY_USER, token), 1, Integer::sum);
+          if (perUser && userId != null) {
+            users.merge(new WordKey(chatId, userId, token), 1, Integer::sum);
+          }
+        }
+      });
+    }
+
+    void write() {
+      final List<Object[]> args = new ArrayList<>(chats.size());
+      chats.forEach((key, count) -> args.add(new Object[]{key.getChatId(), key.getWord(), count}));
+      sql.batchUpdate(UPSERT, args);
+      if (!users.isEmpty()) {
+        final List<Object[]> userArgs = new ArrayList<>(users.size());
+        users.forEach((key, count) -> userArgs.add(
+                new Object[]{key.getChatId(), key.getUserId(), key.getWord(), count}));
+        sql.batchUpdate(USER_UPSERT, userArgs);
+      }
+    }
+
+  }
+
+  @Value
+  private static class WordKey {
+
+    private Long chatId;
+
+    private Long userId;
+
+    private String word;
+
+  }
+
+}
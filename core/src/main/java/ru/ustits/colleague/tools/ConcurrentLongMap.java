@@ -0,0 +1,140 @@
+package ru.ustits.colleague.tools;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Open addressing map from primitive {@code long} keys to non-null values,
+ * read without locks and written under one. Entries are never removed, which
+ * suits registries keyed by chat id that only grow and get updated.
+ *
+ * @author ustits
+ */
+public final class ConcurrentLongMap<V> {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private volatile AtomicReferenceArray<Node<V>> table;
+  private int size;
+
+  public ConcurrentLongMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ConcurrentLongMap(final int expected) {
+    this.table = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(expected, 2) * 2 - 1) << 1);
+  }
+
+  /**
+   * @return the value or null if there is none
+   */
+  public V get(final long key) {
+    final AtomicReferenceArray<Node<V>> nodes = table;
+    final int mask = nodes.length() - 1;
+    for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+      final Node<V> node = nodes.get(slot);
+      if (node == null) {
+        return null;
+      }
+      if (node.key == key) {
+        return node.value;
+      }
+    }
+  }
+
+  /**
+   * @return the previous value or null if there was none
+   */
+  public synchronized V put(final long key, final V value) {
+    Objects.requireNonNull(value);
+    final Node<V> node = node(key);
+    if (node != null) {
+      final V previous = node.value;
+      node.value = value;
+      return previous;
+    }
+    insert(key, value);
+    return null;
+  }
+
+  /**
+   * @return the current value, which is the given one if there was none
+   */
+  public synchronized V putIfAbsent(final long key, final V value) {
+    Objects.requireNonNull(value);
+    final Node<V> node = node(key);
+    if (node != null) {
+      return node.value;
+    }
+    insert(key, value);
+    return value;
+  }
+
+  /**
+   * Computes a missing value outside of the lock, so a slow computation does
+   * not block writers of other keys. A value computed concurrently for the
+   * same key is discarded in favour of the first one stored.
+   */
+  public V computeIfAbsent(final long key, final LongFunction<V> function) {
+    final V value = get(key);
+    return value != null ? value : putIfAbsent(key, function.apply(key));
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private Node<V> node(final long key) {
+    final AtomicReferenceArray<Node<V>> nodes = table;
+    final int mask = nodes.length() - 1;
+    for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+      final Node<V> node = nodes.get(slot);
+      if (node == null || node.key == key) {
+        return node;
+      }
+    }
+  }
+
+  private void insert(final long key, final V value) {
+    if ((size + 1) * 2 > table.length()) {
+      final AtomicReferenceArray<Node<V>> resized = new AtomicReferenceArray<>(table.length() * 2);
+      for (int i = 0; i < table.length(); i++) {
+        final Node<V> node = table.get(i);
+        if (node != null) {
+          resized.set(free(resized, node.key), node);
+        }
+      }
+      table = resized;
+    }
+    table.set(free(table, key), new Node<>(key, value));
+    size++;
+  }
+
+  private static <V> int free(final AtomicReferenceArray<Node<V>> nodes, final long key) {
+    final int mask = nodes.length() - 1;
+    int slot = mix(key) & mask;
+    while (nodes.get(slot) != null) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int mix(final long key) {
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static final class Node<V> {
+
+    private final long key;
+    private volatile V value;
+
+    private Node(final long key, final V value) {
+      this.key = key;
+      this.value = value;
+    }
+
+  }
+
+}
@@ -0,0 +1,199 @@
+package ru.ustits.colleague.tools;
+
+import java.io.*;
+
+/**
+ * HyperLogLog distinct counter with {@code 2^precision} registers and a
+ * relative error of about {@code 1.04 / sqrt(2^precision)}. Counters are
+ * merged by taking register maximums, the one with the higher precision is
+ * folded to the lower one first. Serialized counters
+ * with few non-zero registers are stored sparsely.
+ *
+ * @author ustits
+ */
+public final class HyperLogLog {
+
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 16;
+
+  private static final byte VERSION = 1;
+  private static final byte DENSE = 0;
+  private static final byte SPARSE = 1;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog(final int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("Precision must be in [" + MIN_PRECISION + ", " +
+              MAX_PRECISION + "]: " + precision);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  public void add(final long value) {
+    addHash(mix(value));
+  }
+
+  public void add(final String value) {
+    long hash = FNV_OFFSET;
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    addHash(mix(hash));
+  }
+
+  public void add(final char[] value, final int length) {
+    long hash = FNV_OFFSET;
+    for (int i = 0; i < length; i++) {
+      hash = (hash ^ value[i]) * FNV_PRIME;
+    }
+    addHash(mix(hash));
+  }
+
+  public long estimate() {
+    final int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (final byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    final double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      return Math.round(m * Math.log((double) m / zeros));
+    }
+    return Math.round(estimate);
+  }
+
+  /**
+   * @return union of both counters with the lower of their precisions
+   */
+  public HyperLogLog merge(final HyperLogLog other) {
+    final int lower = Math.min(precision, other.precision);
+    final HyperLogLog merged = fold(lower);
+    final HyperLogLog folded = other.fold(lower);
+    for (int i = 0; i < merged.registers.length; i++) {
+      merged.registers[i] = (byte) Math.max(merged.registers[i], folded.registers[i]);
+    }
+    return merged;
+  }
+
+  /**
+   * @return counter with the same values added at a lower precision, the
+   * result is the same as if they were added to it directly
+   */
+  public HyperLogLog fold(final int lower) {
+    if (lower > precision) {
+      throw new IllegalArgumentException("Unable to fold precision " + precision + " to " + lower);
+    }
+    final HyperLogLog folded = new HyperLogLog(lower);
+    final int shift = precision - lower;
+    for (int i = 0; i < registers.length; i++) {
+      if (registers[i] == 0) {
+        continue;
+      }
+      final int dropped = i & ((1 << shift) - 1);
+      final byte rank = dropped == 0 ?
+              (byte) (shift + registers[i]) :
+              (byte) (Integer.numberOfLeadingZeros(dropped) - (32 - shift) + 1);
+      final int index = i >>> shift;
+      if (folded.registers[index] < rank) {
+        folded.registers[index] = rank;
+      }
+    }
+    return folded;
+  }
+
+  public int precision() {
+    return precision;
+  }
+
+  public byte[] toBytes() {
+    int filled = 0;
+    for (final byte register : registers) {
+      if (register != 0) {
+        filled++;
+      }
+    }
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (final DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      out.writeByte(precision);
+      if (filled * 3 < registers.length) {
+        out.writeByte(SPARSE);
+        out.writeShort(filled);
+        for (int i = 0; i < registers.length; i++) {
+          if (registers[i] != 0) {
+            out.writeShort(i);
+            out.writeByte(registers[i]);
+          }
+        }
+      } else {
+        out.writeByte(DENSE);
+        out.write(registers);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize counter", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static HyperLogLog fromBytes(final byte[] data) {
+    try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      final byte version = in.readByte();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unknown counter version: " + version);
+      }
+      final HyperLogLog counter = new HyperLogLog(in.readByte());
+      if (in.readByte() == SPARSE) {
+        final int filled = in.readUnsignedShort();
+        for (int i = 0; i < filled; i++) {
+          counter.registers[in.readUnsignedShort()] = in.readByte();
+        }
+      } else {
+        in.readFully(counter.registers);
+      }
+      return counter;
+    } catch (IOException | ArrayIndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Malformed counter", e);
+    }
+  }
+
+  private void addHash(final long hash) {
+    final int index = (int) (hash >>> (64 - precision));
+    final long rest = hash << precision | 1L << (precision - 1);
+    final byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+    if (registers[index] < rank) {
+      registers[index] = rank;
+    }
+  }
+
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static double alpha(final int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+
+}
@@ -1,6 +1,5 @@
 package ru.ustits.colleague.tools;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,18 +11,36 @@ public final class ListUtils {
   private ListUtils() {
   }
 
+  /**
+   * @return occurrences of every value, null values included
+   */
   public static <V> Map<V, Integer> count(final List<V> values) {
-    final Map<V, Integer> count = new HashMap<>();
+    final ObjectIntMap<V> counts = new ObjectIntMap<>();
+    int nulls = 0;
     for (final V value : values) {
-      final int counter;
-      if (count.containsKey(value)) {
-        counter = count.get(value) + 1;
+      if (value == null) {
+        nulls++;
       } else {
-        counter = 1;
+        counts.increment(value);
       }
-      count.put(value, counter);
     }
-    return count;
+    final Map<V, Integer> map = counts.toMap();
+    if (nulls > 0) {
+      map.put(null, nulls);
+    }
+    return map;
+  }
+
+  /**
+   * @throws NullPointerException if one of the values is null, use
+   *                              {@link #count(List)} for lists with nulls
+   */
+  public static <V> ObjectIntMap<V> counts(final List<V> values) {
+    final ObjectIntMap<V> counts = new ObjectIntMap<>();
+    for (final V value : values) {
+      counts.increment(value);
+    }
+    return counts;
   }
 
 }
@@ -0,0 +1,135 @@
+package ru.ustits.colleague.tools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Open addressing map from primitive {@code long} keys to primitive
+ * {@code int} counters. Missing keys map to zero and counters are
+ * incremented in place.
+ *
+ * @author ustits
+ */
+public final class LongIntMap {
+
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final long FREE = 0L;
+
+  private long[] keys;
+  private int[] values;
+  private boolean hasFree;
+  private int freeValue;
+  private int size;
+
+  public LongIntMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public LongIntMap(final int expected) {
+    final int capacity = Integer.highestOneBit(Math.max(expected, 2) * 2 - 1) << 1;
+    this.keys = new long[capacity];
+    this.values = new int[capacity];
+  }
+
+  public int increment(final long key) {
+    return add(key, 1);
+  }
+
+  /**
+   * @return the new value of the counter
+   */
+  public int add(final long key, final int delta) {
+    if (key == FREE) {
+      if (!hasFree) {
+        hasFree = true;
+        size++;
+      }
+      return freeValue += delta;
+    }
+    int slot = slot(key);
+    if (keys[slot] == FREE) {
+      if ((size + 1) * 2 > keys.length) {
+        resize();
+        slot = slot(key);
+      }
+      keys[slot] = key;
+      size++;
+    }
+    return values[slot] += delta;
+  }
+
+  public int get(final long key) {
+    if (key == FREE) {
+      return freeValue;
+    }
+    final int slot = slot(key);
+    return keys[slot] == FREE ? 0 : values[slot];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void forEach(final EntryConsumer consumer) {
+    if (hasFree) {
+      consumer.accept(FREE, freeValue);
+    }
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != FREE) {
+        consumer.accept(keys[i], values[i]);
+      }
+    }
+  }
+
+  /**
+   * @return at most {@code limit} entries with the largest counters,
+   * largest first
+   */
+  public Map<Long, Integer> top(final int limit) {
+    final TopN<Long> top = new TopN<>(limit);
+    forEach((key, value) -> {
+      if (top.accepts(value)) {
+        top.offer(key, value);
+      }
+    });
+    final Map<Long, Integer> result = new LinkedHashMap<>();
+    top.forEach((key, value) -> result.put(key, (int) value));
+    return result;
+  }
+
+  private int slot(final long key) {
+    final int mask = keys.length - 1;
+    int slot = mix(key) & mask;
+    while (keys[slot] != FREE && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void resize() {
+    final long[] oldKeys = keys;
+    final int[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new int[oldKeys.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        final int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private static int mix(final long key) {
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  @FunctionalInterface
+  public interface EntryConsumer {
+
+    void accept(final long key, final int value);
+
+  }
+
+}
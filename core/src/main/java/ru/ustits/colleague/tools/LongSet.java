@@ -0,0 +1,164 @@
+package ru.ustits.colleague.tools;
+
+import java.util.Arrays;
+
+/**
+ * Immutable open addressing set of primitive {@code long} values. Lookups
+ * neither box nor allocate, updates return a modified copy, so a set can be
+ * read by many threads while it is being replaced.
+ *
+ * @author ustits
+ */
+public final class LongSet {
+
+  public static final LongSet EMPTY = new LongSet(new long[2], false, 0);
+
+  private static final long FREE = 0L;
+
+  private final long[] keys;
+  private final boolean hasFree;
+  private final int size;
+
+  private LongSet(final long[] keys, final boolean hasFree, final int size) {
+    this.keys = keys;
+    this.hasFree = hasFree;
+    this.size = size;
+  }
+
+  public static LongSet of(final Iterable<Long> values) {
+    int count = 0;
+    for (final Long ignored : values) {
+      count++;
+    }
+    final long[] keys = new long[capacity(count)];
+    boolean hasFree = false;
+    int size = 0;
+    for (final Long value : values) {
+      if (value == null) {
+        continue;
+      }
+      if (value == FREE) {
+        if (!hasFree) {
+          hasFree = true;
+          size++;
+        }
+      } else if (insert(keys, value)) {
+        size++;
+      }
+    }
+    return new LongSet(keys, hasFree, size);
+  }
+
+  public static LongSet of(final long... values) {
+    final Long[] boxed = new Long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      boxed[i] = values[i];
+    }
+    return of(Arrays.asList(boxed));
+  }
+
+  public boolean contains(final long value) {
+    if (value == FREE) {
+      return hasFree;
+    }
+    return keys[slot(keys, value)] == value;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return a set that also contains the value, this set when it already does
+   */
+  public LongSet with(final long value) {
+    if (contains(value)) {
+      return this;
+    }
+    if (value == FREE) {
+      return new LongSet(keys, true, size + 1);
+    }
+    final long[] copy = (size + 1) * 2 > keys.length ? rehash(keys, keys.length * 2) : keys.clone();
+    insert(copy, value);
+    return new LongSet(copy, hasFree, size + 1);
+  }
+
+  /**
+   * @return a set without the value, this set when it does not contain it
+   */
+  public LongSet without(final long value) {
+    if (!contains(value)) {
+      return this;
+    }
+    if (value == FREE) {
+      return new LongSet(keys, false, size - 1);
+    }
+    final long[] copy = new long[keys.length];
+    for (final long key : keys) {
+      if (key != FREE && key != value) {
+        insert(copy, key);
+      }
+    }
+    return new LongSet(copy, hasFree, size - 1);
+  }
+
+  public void forEach(final LongConsumer consumer) {
+    if (hasFree) {
+      consumer.accept(FREE);
+    }
+    for (final long key : keys) {
+      if (key != FREE) {
+        consumer.accept(key);
+      }
+    }
+  }
+
+  private static boolean insert(final long[] keys, final long value) {
+    final int slot = slot(keys, value);
+    if (keys[slot] == value) {
+      return false;
+    }
+    keys[slot] = value;
+    return true;
+  }
+
+  private static long[] rehash(final long[] keys, final int capacity) {
+    final long[] result = new long[capacity];
+    for (final long key : keys) {
+      if (key != FREE) {
+        insert(result, key);
+      }
+    }
+    return result;
+  }
+
+  private static int slot(final long[] keys, final long value) {
+    final int mask = keys.length - 1;
+    int slot = mix(value) & mask;
+    while (keys[slot] != FREE && keys[slot] != value) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int capacity(final int expected) {
+    return Integer.highestOneBit(Math.max(expected, 1) * 2 - 1) << 1;
+  }
+
+  private static int mix(final long key) {
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  @FunctionalInterface
+  public interface LongConsumer {
+
+    void accept(final long value);
+
+  }
+
+}
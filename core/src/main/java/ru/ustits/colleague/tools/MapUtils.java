@@ -26,6 +26,23 @@ public final class MapUtils {
     return limited;
   }
 
+  /**
+   * @return at most {@code size} entries with the largest values, largest
+   * first, without sorting the whole map
+   */
+  public static <K, V extends Number> Map<K, V> top(final Map<K, V> map, final int size) {
+    final TopN<Map.Entry<K, V>> top = new TopN<>(size);
+    for (final Map.Entry<K, V> entry : map.entrySet()) {
+      final long value = entry.getValue().longValue();
+      if (top.accepts(value)) {
+        top.offer(entry, value);
+      }
+    }
+    final Map<K, V> result = new LinkedHashMap<>();
+    top.forEach((entry, value) -> result.put(entry.getKey(), entry.getValue()));
+    return result;
+  }
+
   public static <K, V> Map<K, V> sortByValue(final Map<K, V> map) {
     return map.entrySet()
             .stream()
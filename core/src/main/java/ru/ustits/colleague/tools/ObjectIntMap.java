@@ -0,0 +1,122 @@
+package ru.ustits.colleague.tools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Open addressing map from non-null keys to primitive {@code int} counters.
+ * Missing keys map to zero and counters are incremented in place.
+ *
+ * @author ustits
+ */
+public final class ObjectIntMap<K> {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private Object[] keys;
+  private int[] values;
+  private int size;
+
+  public ObjectIntMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ObjectIntMap(final int expected) {
+    final int capacity = Integer.highestOneBit(Math.max(expected, 2) * 2 - 1) << 1;
+    this.keys = new Object[capacity];
+    this.values = new int[capacity];
+  }
+
+  public int increment(final K key) {
+    return add(key, 1);
+  }
+
+  /**
+   * @return the new value of the counter
+   */
+  public int add(final K key, final int delta) {
+    Objects.requireNonNull(key, "key");
+    int slot = slot(key);
+    if (keys[slot] == null) {
+      if ((size + 1) * 2 > keys.length) {
+        resize();
+        slot = slot(key);
+      }
+      keys[slot] = key;
+      size++;
+    }
+    return values[slot] += delta;
+  }
+
+  public int get(final K key) {
+    final int slot = slot(key);
+    return keys[slot] == null ? 0 : values[slot];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  public void forEach(final ObjIntConsumer<? super K> consumer) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != null) {
+        consumer.accept((K) keys[i], values[i]);
+      }
+    }
+  }
+
+  /**
+   * @return at most {@code limit} entries with the largest counters,
+   * largest first
+   */
+  public Map<K, Integer> top(final int limit) {
+    final TopN<K> top = new TopN<>(limit);
+    forEach(top::offer);
+    final Map<K, Integer> result = new LinkedHashMap<>();
+    top.forEach((key, value) -> result.put(key, (int) value));
+    return result;
+  }
+
+  public Map<K, Integer> toMap() {
+    final Map<K, Integer> map = new LinkedHashMap<>(size * 2);
+    forEach(map::put);
+    return map;
+  }
+
+  private int slot(final Object key) {
+    final int mask = keys.length - 1;
+    int slot = mix(key.hashCode()) & mask;
+    while (keys[slot] != null && !keys[slot].equals(key)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void resize() {
+    final Object[] oldKeys = keys;
+    final int[] oldValues = values;
+    keys = new Object[oldKeys.length * 2];
+    values = new int[oldKeys.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        final int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private static int mix(final int hash) {
+    final int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  @Override
+  public String toString() {
+    return toMap().toString();
+  }
+
+}
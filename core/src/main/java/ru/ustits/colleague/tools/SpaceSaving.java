@@ -0,0 +1,224 @@
+package ru.ustits.colleague.tools;
+
+import lombok.Value;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Space-Saving heavy hitters summary that tracks at most {@code capacity}
+ * keys. A reported count never underestimates the real one and overestimates
+ * it by no more than the entry's error, which is bounded by the total weight
+ * divided by the capacity. Summaries of different windows can be merged.
+ * Counters are kept in an indexed min-heap, so every update is O(log k).
+ *
+ * @author ustits
+ */
+public final class SpaceSaving {
+
+  private static final byte VERSION = 1;
+
+  private final int capacity;
+  private final String[] keys;
+  private final long[] counts;
+  private final long[] errors;
+  private final Map<String, Integer> slots;
+  private int size;
+
+  public SpaceSaving(final int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.keys = new String[capacity];
+    this.counts = new long[capacity];
+    this.errors = new long[capacity];
+    this.slots = new HashMap<>(capacity * 2);
+  }
+
+  public void add(final String key) {
+    add(key, 1);
+  }
+
+  public void add(final String key, final long weight) {
+    final Integer slot = slots.get(key);
+    if (slot != null) {
+      counts[slot] += weight;
+      siftDown(slot);
+    } else if (size < capacity) {
+      put(key, weight, 0);
+    } else {
+      final long min = counts[0];
+      slots.remove(keys[0]);
+      set(0, key, min + weight, min);
+      siftDown(0);
+    }
+  }
+
+  /**
+   * @return the smallest tracked count, an upper bound of any untracked key
+   */
+  public long min() {
+    return size < capacity ? 0 : counts[0];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public List<Entry> top(final int limit) {
+    final List<Entry> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      entries.add(new Entry(keys[i], counts[i], errors[i]));
+    }
+    entries.sort(Comparator.comparingLong(Entry::getCount).reversed().thenComparing(Entry::getKey));
+    return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+  }
+
+  /**
+   * Combines two summaries: a key missing from one of them is assumed to have
+   * that summary's {@link #min()} count, which is added to its error.
+   */
+  public SpaceSaving merge(final SpaceSaving other) {
+    final long thisMin = min();
+    final long otherMin = other.min();
+    final Map<String, long[]> combined = new HashMap<>((size + other.size) * 2);
+    for (int i = 0; i < size; i++) {
+      combined.put(keys[i], new long[]{counts[i] + otherMin, errors[i] + otherMin});
+    }
+    for (int i = 0; i < other.size; i++) {
+      final long[] entry = combined.get(other.keys[i]);
+      if (entry == null) {
+        combined.put(other.keys[i], new long[]{other.counts[i] + thisMin, other.errors[i] + thisMin});
+      } else {
+        entry[0] += other.counts[i] - otherMin;
+        entry[1] += other.errors[i] - otherMin;
+      }
+    }
+    final List<Map.Entry<String, long[]>> entries = new ArrayList<>(combined.entrySet());
+    entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+    final SpaceSaving merged = new SpaceSaving(Math.max(capacity, other.capacity));
+    for (final Map.Entry<String, long[]> entry : entries.subList(0, Math.min(entries.size(), merged.capacity))) {
+      merged.put(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+    }
+    return merged;
+  }
+
+  public byte[] toBytes() {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + size * 16);
+    try (final DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      writeVarLong(out, capacity);
+      writeVarLong(out, size);
+      for (int i = 0; i < size; i++) {
+        out.writeUTF(keys[i]);
+        writeVarLong(out, counts[i]);
+        writeVarLong(out, errors[i]);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize summary", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static SpaceSaving fromBytes(final byte[] data) {
+    try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      final byte version = in.readByte();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unknown summary version: " + version);
+      }
+      final SpaceSaving summary = new SpaceSaving((int) readVarLong(in));
+      final int size = (int) readVarLong(in);
+      for (int i = 0; i < size; i++) {
+        summary.put(in.readUTF(), readVarLong(in), readVarLong(in));
+      }
+      return summary;
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Malformed summary", e);
+    }
+  }
+
+  private void put(final String key, final long count, final long error) {
+    final int slot = size++;
+    set(slot, key, count, error);
+    siftUp(slot);
+  }
+
+  private void set(final int slot, final String key, final long count, final long error) {
+    keys[slot] = key;
+    counts[slot] = count;
+    errors[slot] = error;
+    slots.put(key, slot);
+  }
+
+  private void siftUp(int slot) {
+    while (slot > 0) {
+      final int parent = (slot - 1) >>> 1;
+      if (counts[parent] <= counts[slot]) {
+        return;
+      }
+      swap(slot, parent);
+      slot = parent;
+    }
+  }
+
+  private void siftDown(int slot) {
+    while (true) {
+      final int left = 2 * slot + 1;
+      if (left >= size) {
+        return;
+      }
+      final int right = left + 1;
+      final int child = right < size && counts[right] < counts[left] ? right : left;
+      if (counts[slot] <= counts[child]) {
+        return;
+      }
+      swap(slot, child);
+      slot = child;
+    }
+  }
+
+  private void swap(final int a, final int b) {
+    final String key = keys[a];
+    final long count = counts[a];
+    final long error = errors[a];
+    set(a, keys[b], counts[b], errors[b]);
+    set(b, key, count, error);
+  }
+
+  private static void writeVarLong(final DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(final DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length number");
+  }
+
+  @Value
+  public static class Entry {
+
+    private String key;
+
+    private long count;
+
+    private long error;
+
+  }
+
+}
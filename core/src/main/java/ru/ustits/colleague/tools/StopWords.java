@@ -0,0 +1,104 @@
+package ru.ustits.colleague.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable open addressing set of words normalized by {@link Tokenizer}.
+ * Lookups compare {@code char} ranges directly, so tokens can be checked
+ * without creating strings.
+ *
+ * @author ustits
+ */
+public final class StopWords {
+
+  public static final StopWords EMPTY = of(new String[0]);
+
+  private final char[][] table;
+  private final int mask;
+  private final int size;
+
+  private StopWords(final char[][] table, final int size) {
+    this.table = table;
+    this.mask = table.length - 1;
+    this.size = size;
+  }
+
+  public static StopWords of(final String... words) {
+    return of(Arrays.asList(words));
+  }
+
+  public static StopWords of(final Iterable<String> words) {
+    final Tokenizer tokenizer = new Tokenizer();
+    final List<String> tokens = new ArrayList<>();
+    for (final String word : words) {
+      tokens.addAll(tokenizer.tokens(word));
+    }
+    final char[][] table = new char[capacity(tokens.size())][];
+    final int mask = table.length - 1;
+    int size = 0;
+    for (final String token : tokens) {
+      final char[] word = token.toCharArray();
+      int slot = hash(word, word.length) & mask;
+      while (table[slot] != null && !equal(table[slot], word, word.length)) {
+        slot = (slot + 1) & mask;
+      }
+      if (table[slot] == null) {
+        table[slot] = word;
+        size++;
+      }
+    }
+    return new StopWords(table, size);
+  }
+
+  public boolean contains(final char[] word, final int length) {
+    int slot = hash(word, length) & mask;
+    char[] candidate;
+    while ((candidate = table[slot]) != null) {
+      if (equal(candidate, word, length)) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  public boolean contains(final String word) {
+    return contains(word.toCharArray(), word.length());
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private static int capacity(final int words) {
+    int capacity = 2;
+    while (capacity < words * 2) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private static int hash(final char[] word, final int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + word[i];
+    }
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean equal(final char[] candidate, final char[] word, final int length) {
+    if (candidate.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (candidate[i] != word[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,94 @@
+package ru.ustits.colleague.tools;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads for blocking work. When virtual threads are requested and the
+ * runtime has them (Java 21+), every task gets its own virtual thread,
+ * otherwise platform threads from a bounded pool are used. Virtual threads
+ * are looked up reflectively, so the code still runs on Java 8. A virtual
+ * thread blocking inside {@code synchronized} pins its carrier, so blocking
+ * libraries have to lock with {@code java.util.concurrent} locks, e.g.
+ * pgjdbc from 42.6.
+ *
+ * @author ustits
+ */
+@Log4j2
+public final class Threads {
+
+  private static final boolean VIRTUAL = virtualBuilder() != null;
+
+  private Threads() {
+  }
+
+  public static boolean virtualSupported() {
+    return VIRTUAL;
+  }
+
+  /**
+   * @return factory of threads named {@code name-N}, daemon platform threads
+   * unless virtual ones are requested and supported
+   */
+  public static ThreadFactory factory(final String name, final boolean virtual) {
+    if (virtual && virtualSupported()) {
+      final ThreadFactory factory = virtualFactory(name);
+      if (factory != null) {
+        return factory;
+      }
+    }
+    final AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable, name + "-" + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * @param threads  pool size used without virtual threads
+   * @param capacity queue size of that pool, tasks above it run in the
+   *                 submitting thread
+   */
+  public static ExecutorService executor(final String name, final boolean virtual,
+                                         final int threads, final int capacity) {
+    if (virtual && virtualSupported()) {
+      try {
+        final Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        log.info("Running {} on virtual threads", name);
+        return (ExecutorService) perTask.invoke(null, factory(name, true));
+      } catch (ReflectiveOperationException e) {
+        log.warn("Unable to create virtual thread executor, falling back to a pool", e);
+      }
+    } else if (virtual) {
+      log.info("Virtual threads are not supported by this runtime, running {} on a pool", name);
+    }
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(capacity), factory(name, false),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  private static ThreadFactory virtualFactory(final String name) {
+    try {
+      final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      final Object named = builder.getMethod("name", String.class, long.class)
+              .invoke(virtualBuilder(), name + "-", 0L);
+      return (ThreadFactory) builder.getMethod("factory").invoke(named);
+    } catch (ReflectiveOperationException e) {
+      log.warn("Unable to create virtual thread factory", e);
+      return null;
+    }
+  }
+
+  private static Object virtualBuilder() {
+    try {
+      return Thread.class.getMethod("ofVirtual").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+package ru.ustits.colleague.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits text into lowercase words in a single pass. A word is a run of
+ * letters or digits of any script, {@code ё} is folded into {@code е}.
+ * Words are written into a reusable buffer that is valid only during the
+ * callback, so an instance must not be shared between threads.
+ *
+ * @author ustits
+ */
+public final class Tokenizer {
+
+  private static final int INITIAL_CAPACITY = 32;
+
+  private char[] buffer = new char[INITIAL_CAPACITY];
+
+  public int tokenize(final CharSequence text, final TokenConsumer consumer) {
+    int tokens = 0;
+    int length = 0;
+    final int size = text.length();
+    for (int i = 0; i < size; ) {
+      final char c = text.charAt(i);
+      if (c < 0x80) {
+        i++;
+        if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+          length = append(c, length);
+          continue;
+        } else if (c >= 'A' && c <= 'Z') {
+          length = append(c | 0x20, length);
+          continue;
+        }
+      } else {
+        final int codePoint = Character.codePointAt(text, i);
+        i += Character.charCount(codePoint);
+        if (Character.isLetterOrDigit(codePoint)) {
+          length = append(fold(codePoint), length);
+          continue;
+        }
+      }
+      if (length > 0) {
+        consumer.accept(buffer, length);
+        tokens++;
+        length = 0;
+      }
+    }
+    if (length > 0) {
+      consumer.accept(buffer, length);
+      tokens++;
+    }
+    return tokens;
+  }
+
+  public List<String> tokens(final CharSequence text) {
+    final List<String> tokens = new ArrayList<>();
+    tokenize(text, (word, length) -> tokens.add(new String(word, 0, length)));
+    return tokens;
+  }
+
+  static int fold(final int codePoint) {
+    final int lower = Character.toLowerCase(codePoint);
+    return lower == 'ё' ? 'е' : lower;
+  }
+
+  private int append(final int codePoint, final int length) {
+    if (length + 2 > buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    if (Character.isBmpCodePoint(codePoint)) {
+      buffer[length] = (char) codePoint;
+      return length + 1;
+    }
+    return length + Character.toChars(codePoint, buffer, length);
+  }
+
+  @FunctionalInterface
+  public interface TokenConsumer {
+
+    void accept(final char[] word, final int length);
+
+  }
+
+}
@@ -0,0 +1,126 @@
+package ru.ustits.colleague.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the {@code limit} items with the largest scores seen so far in a
+ * bounded min-heap, so selecting the top of {@code n} items takes
+ * O(n log limit) time and O(limit) memory. An item never displaces one
+ * with an equal score.
+ *
+ * @author ustits
+ */
+public final class TopN<T> {
+
+  private final int limit;
+  private final Object[] items;
+  private final long[] scores;
+  private int size;
+
+  public TopN(final int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Limit must not be negative: " + limit);
+    }
+    this.limit = limit;
+    this.items = new Object[limit];
+    this.scores = new long[limit];
+  }
+
+  /**
+   * @return true if an item with the score would be kept, lets callers skip
+   * creating items that would be rejected
+   */
+  public boolean accepts(final long score) {
+    return size < limit || limit > 0 && score > scores[0];
+  }
+
+  public boolean offer(final T item, final long score) {
+    if (size < limit) {
+      items[size] = item;
+      scores[size] = score;
+      siftUp(size++);
+      return true;
+    }
+    if (!accepts(score)) {
+      return false;
+    }
+    items[0] = item;
+    scores[0] = score;
+    siftDown(0);
+    return true;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return kept items, largest score first
+   */
+  public List<T> items() {
+    final List<T> result = new ArrayList<>(size);
+    forEach((item, score) -> result.add(item));
+    return result;
+  }
+
+  /**
+   * Visits kept items from the largest score to the smallest.
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(final EntryConsumer<? super T> consumer) {
+    final Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(scores[b], scores[a]));
+    for (final int i : order) {
+      consumer.accept((T) items[i], scores[i]);
+    }
+  }
+
+  private void siftUp(int slot) {
+    while (slot > 0) {
+      final int parent = (slot - 1) >>> 1;
+      if (scores[parent] <= scores[slot]) {
+        return;
+      }
+      swap(slot, parent);
+      slot = parent;
+    }
+  }
+
+  private void siftDown(int slot) {
+    while (true) {
+      final int left = 2 * slot + 1;
+      if (left >= size) {
+        return;
+      }
+      final int right = left + 1;
+      final int child = right < size && scores[right] < scores[left] ? right : left;
+      if (scores[slot] <= scores[child]) {
+        return;
+      }
+      swap(slot, child);
+      slot = child;
+    }
+  }
+
+  private void swap(final int a, final int b) {
+    final Object item = items[a];
+    final long score = scores[a];
+    items[a] = items[b];
+    scores[a] = scores[b];
+    items[b] = item;
+    scores[b] = score;
+  }
+
+  @FunctionalInterface
+  public interface EntryConsumer<T> {
+
+    void accept(final T item, final long score);
+
+  }
+
+}
@@ -0,0 +1,175 @@
+package ru.ustits.colleague.triggers;
+
+import ru.ustits.colleague.repositories.records.TriggerRecord;
+import ru.ustits.colleague.tools.IntParser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
+
+import static ru.ustits.colleague.tools.StringUtils.split;
+
+/**
+ * Trigger response strategies and their parsing from a chat state such as
+ * {@code all} or {@code periodic 30}.
+ *
+ * @author ustits
+ */
+public final class ResponseStrategies {
+
+  public static final String ALL = "all";
+  public static final String NOTHING = "nothing";
+  public static final String FIRST = "first";
+  public static final String LAST = "last";
+  public static final String RANDOM = "random";
+  public static final String PERIODIC = "periodic";
+
+  public static final int DEFAULT_CHANCE = 50;
+
+  private static final IntUnaryOperator RANDOM_INT = bound -> ThreadLocalRandom.current().nextInt(bound);
+  private static final IntParser PARSER = new IntParser();
+
+  private ResponseStrategies() {
+  }
+
+  public static ResponseStrategy defaultStrategy() {
+    return new All();
+  }
+
+  public static Optional<ResponseStrategy> parse(final String state) {
+    final String[] parts = split(state == null ? null : state.trim());
+    if (parts.length == 0) {
+      return Optional.empty();
+    }
+    switch (parts[0]) {
+      case ALL:
+        return Optional.of(new All());
+      case NOTHING:
+        return Optional.of(new Nothing());
+      case FIRST:
+        return Optional.of(new First());
+      case LAST:
+        return Optional.of(new Last());
+      case RANDOM:
+        return Optional.of(new Random(RANDOM_INT));
+      case PERIODIC:
+        final Optional<Integer> chance = parts.length > 1 ? PARSER.parse(parts[1]) : Optional.of(DEFAULT_CHANCE);
+        return chance.filter(value -> value >= 0 && value <= 100)
+                .map(value -> new Periodic(value, RANDOM_INT));
+      default:
+        return Optional.empty();
+    }
+  }
+
+  static final class All implements ResponseStrategy {
+
+    @Override
+    public List<TriggerRecord> select(final List<TriggerRecord> matches) {
+      return matches;
+    }
+
+    @Override
+    public String state() {
+      return ALL;
+    }
+
+  }
+
+  static final class Nothing implements ResponseStrategy {
+
+    @Override
+    public List<TriggerRecord> select(final List<TriggerRecord> matches) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public String state() {
+      return NOTHING;
+    }
+
+  }
+
+  static final class First implements ResponseStrategy {
+
+    @Override
+    public List<TriggerRecord> select(final List<TriggerRecord> matches) {
+      return matches.isEmpty() ? matches : Collections.singletonList(matches.get(0));
+    }
+
+    @Override
+    public String state() {
+      return FIRST;
+    }
+
+  }
+
+  static final class Last implements ResponseStrategy {
+
+    @Override
+    public List<TriggerRecord> select(final List<TriggerRecord> matches) {
+      return matches.isEmpty() ? matches : Collections.singletonList(matches.get(matches.size() - 1));
+    }
+
+    @Override
+    public String state() {
+      return LAST;
+    }
+
+  }
+
+  static final class Random implements ResponseStrategy {
+
+    private final IntUnaryOperator random;
+
+    Random(final IntUnaryOperator random) {
+      this.random = random;
+    }
+
+    @Override
+    public List<TriggerRecord> select(final List<TriggerRecord> matches) {
+      return matches.isEmpty() ? matches :
+              Collections.singletonList(matches.get(random.applyAsInt(matches.size())));
+    }
+
+    @Override
+    public String state() {
+      return RANDOM;
+    }
+
+  }
+
+  /**
+   * Answers one random trigger with the chance of {@code chance} percent.
+   */
+  static final class Periodic implements ResponseStrategy {
+
+    private final int chance;
+    private final IntUnaryOperator random;
+
+    Periodic(final int chance, final IntUnaryOperator random) {
+      this.chance = chance;
+      this.random = random;
+    }
+
+    @Override
+    public List<TriggerRecord> select(final List<TriggerRecord> matches) {
+      if (matches.isEmpty() || random.applyAsInt(100) >= chance) {
+        return Collections.emptyList();
+      }
+      return Collections.singletonList(matches.get(random.applyAsInt(matches.size())));
+    }
+
+    @Override
+    public String state() {
+      return PERIODIC + " " + chance;
+    }
+
+    int chance() {
+      return chance;
+    }
+
+  }
+
+}
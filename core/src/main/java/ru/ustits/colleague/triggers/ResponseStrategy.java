@@ -0,0 +1,24 @@
+package ru.ustits.colleague.triggers;
+
+import ru.ustits.colleague.repositories.records.TriggerRecord;
+
+import java.util.List;
+
+/**
+ * Chooses which of the matched triggers are answered.
+ *
+ * @author ustits
+ */
+public interface ResponseStrategy {
+
+  /**
+   * @param matches triggers ordered by their first occurrence in a message
+   */
+  List<TriggerRecord> select(final List<TriggerRecord> matches);
+
+  /**
+   * @return the state this strategy is stored and switched by
+   */
+  String state();
+
+}
@@ -0,0 +1,38 @@
+package ru.ustits.colleague.triggers;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import ru.ustits.colleague.repositories.ChatStateRepository;
+import ru.ustits.colleague.repositories.ChatsRepository;
+import ru.ustits.colleague.repositories.IgnoreTriggerRepository;
+import ru.ustits.colleague.repositories.TriggerRepository;
+import ru.ustits.colleague.services.ChatStateRegistry;
+import ru.ustits.colleague.services.IgnoreService;
+import ru.ustits.colleague.services.TriggerService;
+
+/**
+ * Services answering triggers. They are not scanned with the rest of the
+ * components, a bot that answers triggers imports this class into its
+ * configuration, so other bots do not load trigger snapshots or start the
+ * rebuild thread.
+ *
+ * @author ustits
+ */
+public class TriggerConfig {
+
+  @Bean
+  public TriggerService triggerService(final TriggerRepository repository, final Environment env) {
+    return new TriggerService(repository, env);
+  }
+
+  @Bean
+  public IgnoreService ignoreService(final IgnoreTriggerRepository repository) {
+    return new IgnoreService(repository);
+  }
+
+  @Bean
+  public ChatStateRegistry chatStateRegistry(final ChatsRepository chats, final ChatStateRepository states) {
+    return new ChatStateRegistry(chats, states);
+  }
+
+}
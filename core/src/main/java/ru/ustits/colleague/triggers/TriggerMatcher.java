@@ -0,0 +1,187 @@
+package ru.ustits.colleague.triggers;
+
+import ru.ustits.colleague.repositories.records.TriggerRecord;
+import ru.ustits.colleague.tools.LongIntMap;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton compiled from the triggers of a chat. Finds every
+ * trigger contained in a text, ignoring case, in one pass over the text
+ * however many triggers there are. Instances are immutable and safe to
+ * share between threads.
+ *
+ * @author ustits
+ */
+public final class TriggerMatcher {
+
+  public static final TriggerMatcher EMPTY = new TriggerMatcher(Collections.emptyList());
+
+  private static final int ROOT = 0;
+  private static final int NONE = -1;
+
+  private final TriggerRecord[] triggers;
+  private final int[] lengths;
+  private final LongIntMap transitions;
+  private final int[] fail;
+  private final int[] outputs;
+  private final int[] outputNext;
+  private final int[] dictionary;
+
+  public TriggerMatcher(final List<TriggerRecord> records) {
+    final List<TriggerRecord> patterns = new ArrayList<>(records.size());
+    for (final TriggerRecord record : records) {
+      if (record.getTrigger() != null && !record.getTrigger().isEmpty()) {
+        patterns.add(record);
+      }
+    }
+    this.triggers = patterns.toArray(new TriggerRecord[0]);
+    this.lengths = new int[triggers.length];
+    this.transitions = new LongIntMap();
+    final List<int[]> children = new ArrayList<>();
+    children.add(new int[0]);
+    final IntList outputHeads = new IntList();
+    outputHeads.add(NONE);
+    final int[] next = new int[triggers.length];
+    int nodes = 1;
+    for (int i = 0; i < triggers.length; i++) {
+      final String trigger = triggers[i].getTrigger();
+      lengths[i] = trigger.length();
+      int node = ROOT;
+      for (int j = 0; j < trigger.length(); j++) {
+        final char c = Character.toLowerCase(trigger.charAt(j));
+        final int child = transitions.get(key(node, c)) - 1;
+        if (child == NONE) {
+          transitions.add(key(node, c), nodes + 1);
+          children.set(node, append(children.get(node), nodes));
+          children.add(new int[0]);
+          outputHeads.add(NONE);
+          node = nodes++;
+        } else {
+          node = child;
+        }
+      }
+      next[i] = outputHeads.get(node);
+      outputHeads.set(node, i);
+    }
+    this.outputs = outputHeads.toArray();
+    this.outputNext = next;
+    this.fail = new int[nodes];
+    this.dictionary = new int[nodes];
+    Arrays.fill(dictionary, NONE);
+    final char[] labels = labels(nodes);
+    final ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (final int child : children.get(ROOT)) {
+      fail[child] = ROOT;
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      final int node = queue.poll();
+      for (final int child : children.get(node)) {
+        final char c = labels[child];
+        int state = fail[node];
+        while (state != ROOT && transitions.get(key(state, c)) == 0) {
+          state = fail[state];
+        }
+        final int target = transitions.get(key(state, c)) - 1;
+        fail[child] = target == NONE || target == child ? ROOT : target;
+        dictionary[child] = outputs[fail[child]] != NONE ? fail[child] : dictionary[fail[child]];
+        queue.add(child);
+      }
+    }
+  }
+
+  /**
+   * @return matched triggers ordered by their first occurrence in the text,
+   * every trigger is returned once
+   */
+  public List<TriggerRecord> match(final String text) {
+    if (triggers.length == 0 || text == null) {
+      return Collections.emptyList();
+    }
+    final BitSet seen = new BitSet(triggers.length);
+    final List<Match> matches = new ArrayList<>();
+    int node = ROOT;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = Character.toLowerCase(text.charAt(i));
+      int child;
+      while ((child = transitions.get(key(node, c)) - 1) == NONE && node != ROOT) {
+        node = fail[node];
+      }
+      node = child == NONE ? ROOT : child;
+      for (int state = outputs[node] != NONE ? node : dictionary[node]; state != NONE; state = dictionary[state]) {
+        for (int pattern = outputs[state]; pattern != NONE; pattern = outputNext[pattern]) {
+          if (!seen.get(pattern)) {
+            seen.set(pattern);
+            matches.add(new Match(pattern, i - lengths[pattern] + 1));
+          }
+        }
+      }
+    }
+    matches.sort(Comparator.comparingInt((Match match) -> match.start).thenComparingInt(match -> match.pattern));
+    final List<TriggerRecord> result = new ArrayList<>(matches.size());
+    for (final Match match : matches) {
+      result.add(triggers[match.pattern]);
+    }
+    return result;
+  }
+
+  public int size() {
+    return triggers.length;
+  }
+
+  private static long key(final int node, final char c) {
+    return ((long) (node + 1) << 16) | c;
+  }
+
+  private char[] labels(final int nodes) {
+    final char[] labels = new char[nodes];
+    transitions.forEach((key, child) -> labels[child - 1] = (char) key);
+    return labels;
+  }
+
+  private static int[] append(final int[] array, final int value) {
+    final int[] result = Arrays.copyOf(array, array.length + 1);
+    result[array.length] = value;
+    return result;
+  }
+
+  private static final class Match {
+
+    private final int pattern;
+    private final int start;
+
+    private Match(final int pattern, final int start) {
+      this.pattern = pattern;
+      this.start = start;
+    }
+
+  }
+
+  private static final class IntList {
+
+    private int[] values = new int[16];
+    private int size;
+
+    void add(final int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int get(final int index) {
+      return values[index];
+    }
+
+    void set(final int index, final int value) {
+      values[index] = value;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+
+  }
+
+}
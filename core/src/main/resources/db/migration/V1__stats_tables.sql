@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS message_counts (
+    chat_id bigint NOT NULL REFERENCES chats(id),
+    user_id bigint NOT NULL REFERENCES users(id),
+    is_edited boolean NOT NULL,
+    count bigint NOT NULL,
+    CONSTRAINT message_counts_pkey PRIMARY KEY (chat_id, is_edited, user_id)
+);
+
+CREATE TABLE IF NOT EXISTS message_activity (
+    chat_id bigint NOT NULL REFERENCES chats(id),
+    user_id bigint NOT NULL REFERENCES users(id),
+    hour timestamp without time zone NOT NULL,
+    count bigint NOT NULL,
+    CONSTRAINT message_activity_pkey PRIMARY KEY (chat_id, hour, user_id)
+);
@@ -0,0 +1,11 @@
+CREATE INDEX IF NOT EXISTS messages_chat_id_user_id_idx ON messages (chat_id, user_id, date, id);
+
+CREATE INDEX IF NOT EXISTS messages_chat_id_is_edited_idx ON messages (chat_id, is_edited);
+
+CREATE INDEX IF NOT EXISTS messages_date_idx ON messages (date);
+
+CREATE INDEX IF NOT EXISTS triggers_chat_id_idx ON triggers (chat_id);
+
+CREATE INDEX IF NOT EXISTS repeats_chat_id_idx ON repeats (chat_id);
+
+CREATE INDEX IF NOT EXISTS ignore_triggers_chat_id_user_id_idx ON ignore_triggers (chat_id, user_id);
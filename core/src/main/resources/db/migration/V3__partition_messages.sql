@@ -0,0 +1,76 @@
+-- The check lets the attach skip scanning the table for rows outside of
+-- the range. It is added unvalidated and validated in a transaction of its
+-- own, which scans the table without blocking reads and writes. The index
+-- for the new primary key is built there too, before the rename locks the
+-- table for the rest of the migration.
+DO $$
+DECLARE
+    legacy_upper timestamp without time zone;
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'messages'::regclass) <> 'r' OR
+            EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'messages_legacy_date_check') THEN
+        RETURN;
+    END IF;
+
+    SELECT greatest(date_trunc('month', localtimestamp), date_trunc('month', max(date))) + interval '1 month'
+        INTO legacy_upper FROM messages;
+    EXECUTE format('ALTER TABLE messages ADD CONSTRAINT messages_legacy_date_check CHECK (date < %L) NOT VALID',
+        legacy_upper);
+END $$;
+-- commit
+DO $$
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'messages'::regclass) <> 'r' THEN
+        RETURN;
+    END IF;
+
+    ALTER TABLE messages VALIDATE CONSTRAINT messages_legacy_date_check;
+    CREATE UNIQUE INDEX IF NOT EXISTS messages_legacy_id_date_idx ON messages (id, date);
+END $$;
+-- commit
+DO $$
+DECLARE
+    legacy_upper timestamp without time zone;
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'messages'::regclass) <> 'r' THEN
+        RETURN;
+    END IF;
+
+    SELECT substring(pg_get_constraintdef(oid) FROM '''([^'']+)''')::timestamp without time zone
+        INTO legacy_upper FROM pg_constraint
+        WHERE conrelid = 'messages'::regclass AND conname = 'messages_legacy_date_check';
+
+    ALTER TABLE messages RENAME TO messages_legacy;
+    ALTER TABLE messages_legacy RENAME CONSTRAINT messages_pkey TO messages_legacy_pkey;
+    ALTER INDEX messages_chat_id_user_id_idx RENAME TO messages_legacy_chat_id_user_id_idx;
+    ALTER INDEX messages_chat_id_is_edited_idx RENAME TO messages_legacy_chat_id_is_edited_idx;
+    ALTER INDEX messages_date_idx RENAME TO messages_legacy_date_idx;
+
+    CREATE TABLE messages (
+        id integer NOT NULL DEFAULT nextval('messages_id_seq'::regclass),
+        msg_id bigint NOT NULL,
+        date timestamp without time zone NOT NULL,
+        text text NOT NULL,
+        is_edited boolean NOT NULL,
+        chat_id bigint REFERENCES chats(id),
+        user_id bigint REFERENCES users(id),
+        CONSTRAINT messages_pkey PRIMARY KEY (id, date)
+    ) PARTITION BY RANGE (date);
+
+    ALTER SEQUENCE messages_id_seq OWNED BY messages.id;
+
+    CREATE INDEX messages_chat_id_user_id_idx ON messages (chat_id, user_id, date, id);
+    CREATE INDEX messages_chat_id_is_edited_idx ON messages (chat_id, is_edited);
+    CREATE INDEX messages_date_idx ON messages (date);
+
+    -- The attach adopts indexes matching the ones declared on the parent
+    -- instead of building them while holding the lock, the primary key is
+    -- the only one that differs.
+    ALTER TABLE messages_legacy DROP CONSTRAINT messages_legacy_pkey,
+        ADD CONSTRAINT messages_legacy_pkey PRIMARY KEY USING INDEX messages_legacy_id_date_idx;
+    EXECUTE format('ALTER TABLE messages ATTACH PARTITION messages_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+        legacy_upper);
+    ALTER TABLE messages_legacy DROP CONSTRAINT messages_legacy_date_check;
+
+    CREATE TABLE messages_default PARTITION OF messages DEFAULT;
+END $$;
@@ -0,0 +1,27 @@
+CREATE TABLE word_counts (
+    chat_id bigint NOT NULL REFERENCES chats(id),
+    word text NOT NULL,
+    count bigint NOT NULL,
+    CONSTRAINT word_counts_pkey PRIMARY KEY (chat_id, word)
+);
+
+CREATE INDEX word_counts_chat_id_count_idx ON word_counts (chat_id, count DESC);
+
+CREATE TABLE user_word_counts (
+    chat_id bigint NOT NULL REFERENCES chats(id),
+    user_id bigint NOT NULL REFERENCES users(id),
+    word text NOT NULL,
+    count bigint NOT NULL,
+    CONSTRAINT user_word_counts_pkey PRIMARY KEY (chat_id, user_id, word)
+);
+
+CREATE INDEX user_word_counts_chat_id_user_id_count_idx ON user_word_counts (chat_id, user_id, count DESC);
+
+-- messages up to the boundary existed before ingestion started to count words
+CREATE TABLE word_counts_backfill (
+    boundary integer NOT NULL,
+    position integer NOT NULL
+);
+
+INSERT INTO word_counts_backfill (boundary, position)
+    SELECT coalesce(max(id), 0), 0 FROM messages;
@@ -0,0 +1,7 @@
+CREATE TABLE chat_sketches (
+    chat_id bigint NOT NULL REFERENCES chats(id),
+    kind varchar(32) NOT NULL,
+    day date NOT NULL,
+    data bytea NOT NULL,
+    CONSTRAINT chat_sketches_pkey PRIMARY KEY (chat_id, kind, day)
+);
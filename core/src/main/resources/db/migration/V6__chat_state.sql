@@ -0,0 +1,8 @@
+-- the trigger bot may have created these already
+CREATE TABLE IF NOT EXISTS chat_state (
+    id serial PRIMARY KEY,
+    chat_id bigint NOT NULL UNIQUE REFERENCES chats(id),
+    state text
+);
+
+ALTER TABLE chats ADD COLUMN IF NOT EXISTS state_id integer REFERENCES chat_state(id);
@@ -0,0 +1,17 @@
+-- counters of databases that held messages before the counters existed,
+-- ingestion of this version only starts after migrations are applied
+LOCK TABLE message_counts IN SHARE ROW EXCLUSIVE MODE;
+
+INSERT INTO message_counts (chat_id, user_id, is_edited, count)
+    SELECT chat_id, user_id, is_edited, count(*) FROM messages
+    WHERE chat_id IS NOT NULL AND user_id IS NOT NULL
+      AND NOT EXISTS (SELECT 1 FROM message_counts)
+    GROUP BY chat_id, user_id, is_edited;
+
+LOCK TABLE message_activity IN SHARE ROW EXCLUSIVE MODE;
+
+INSERT INTO message_activity (chat_id, user_id, hour, count)
+    SELECT chat_id, user_id, date_trunc('hour', date), count(*) FROM messages
+    WHERE chat_id IS NOT NULL AND user_id IS NOT NULL AND NOT is_edited
+      AND NOT EXISTS (SELECT 1 FROM message_activity)
+    GROUP BY chat_id, user_id, date_trunc('hour', date);
@@ -26,7 +26,7 @@ public abstract class RepositoryTest {
 
   @Rule
   public PostgreSQLContainer container = (PostgreSQLContainer)
-          new PostgreSQLContainer("postgres:9")
+          new PostgreSQLContainer("postgres:11")
                   .withDatabaseName(dbName)
                   .withFileSystemBind(BUILD_SCRIPT,
                           INIT_DIR + DB_SCRIPT, BindMode.READ_ONLY)
@@ -42,11 +42,11 @@ public abstract class RepositoryTest {
 
   private DataSource dataSource() {
     final PGSimpleDataSource dataSource = new PGSimpleDataSource();
-    dataSource.setServerName(container.getContainerIpAddress());
+    dataSource.setServerNames(new String[]{container.getContainerIpAddress()});
     dataSource.setDatabaseName(dbName);
     dataSource.setUser(container.getUsername());
     dataSource.setPassword(container.getPassword());
-    dataSource.setPortNumber(container.getMappedPort(PG_PORT));
+    dataSource.setPortNumbers(new int[]{container.getMappedPort(PG_PORT)});
     return dataSource;
   }
 
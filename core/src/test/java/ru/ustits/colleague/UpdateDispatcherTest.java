@@ -0,0 +1,102 @@
+package ru.ustits.colleague;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class UpdateDispatcherTest {
+
+  private MeterRegistry registry;
+  private UpdateDispatcher dispatcher;
+
+  @Before
+  public void setUp() {
+    registry = new SimpleMeterRegistry();
+    dispatcher = new UpdateDispatcher(registry, 4, 10);
+  }
+
+  @After
+  public void tearDown() {
+    dispatcher.close();
+  }
+
+  @Test
+  public void testKeepsOrderPerChat() {
+    final List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+    for (int i = 0; i < 1000; i++) {
+      final int value = i;
+      dispatcher.execute(42L, () -> handled.add(value));
+    }
+    dispatcher.close();
+    assertThat(handled).hasSize(1000).isSorted();
+  }
+
+  @Test
+  public void testProcessesChatsInParallel() throws InterruptedException {
+    long other = 1;
+    while (dispatcher.lane(other) == dispatcher.lane(0)) {
+      other++;
+    }
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(1);
+    dispatcher.execute(0, () -> {
+      try {
+        blocked.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    dispatcher.execute(other, done::countDown);
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    blocked.countDown();
+  }
+
+  @Test
+  public void testSurvivesFailures() throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(1);
+    dispatcher.execute(1, () -> {
+      throw new IllegalStateException("failure");
+    });
+    dispatcher.execute(1, done::countDown);
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void testReportsLaneMetrics() {
+    dispatcher.execute(7L, () -> {
+    });
+    dispatcher.close();
+    final String lane = String.valueOf(dispatcher.lane(7L));
+    assertThat(registry.get("updates.lane.latency").tag("lane", lane).timer().count()).isEqualTo(1);
+    assertThat(registry.get("updates.lane.depth").tag("lane", lane).gauge().value()).isZero();
+  }
+
+  @Test
+  public void testKeysByChat() throws IOException {
+    final ObjectMapper mapper = new ObjectMapper();
+    final Update message = mapper.readValue("{\"update_id\": 1, \"message\": {\"message_id\": 1, " +
+            "\"date\": 0, \"chat\": {\"id\": -100, \"type\": \"group\"}}}", Update.class);
+    final Update callback = mapper.readValue("{\"update_id\": 2, \"callback_query\": {\"id\": \"1\", " +
+            "\"from\": {\"id\": 42, \"first_name\": \"user\"}}}", Update.class);
+    assertThat(UpdateDispatcher.key(message)).isEqualTo(-100L);
+    assertThat(UpdateDispatcher.key(callback)).isEqualTo(42L);
+    assertThat(UpdateDispatcher.key(new Update())).isZero();
+  }
+
+}
@@ -0,0 +1,41 @@
+package ru.ustits.colleague;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author ustits
+ */
+public class UpdateLogTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void testMessageSummary() throws IOException {
+    final Update update = mapper.readValue("{\"update_id\": 10, \"message\": {\"message_id\": 1, " +
+            "\"date\": 0, \"chat\": {\"id\": -100, \"type\": \"group\"}, " +
+            "\"from\": {\"id\": 42, \"first_name\": \"user\"}, \"text\": \"hello\"}}", Update.class);
+    assertThat(new UpdateLog.Summary(update).toString())
+            .isEqualTo("update=10 type=message chat=-100 user=42 text=5");
+  }
+
+  @Test
+  public void testCallbackSummary() throws IOException {
+    final Update update = mapper.readValue("{\"update_id\": 11, \"callback_query\": {\"id\": \"1\", " +
+            "\"from\": {\"id\": 42, \"first_name\": \"user\"}, \"data\": \"help\"}}", Update.class);
+    assertThat(new UpdateLog.Summary(update).toString()).isEqualTo("update=11 type=callback user=42");
+  }
+
+  @Test
+  public void testSampleBounds() {
+    assertThatThrownBy(() -> new UpdateLog(1.5)).isInstanceOf(IllegalArgumentException.class);
+    new UpdateLog(0).log(new Update());
+  }
+
+}
@@ -0,0 +1,158 @@
+package ru.ustits.colleague;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.telegram.telegrambots.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class WebhookServerTest {
+
+  private static final String PATH = "/secret";
+
+  private MeterRegistry registry;
+  private List<Update> received;
+  private WebhookServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    registry = new SimpleMeterRegistry();
+    received = new CopyOnWriteArrayList<>();
+    server = new WebhookServer(registry, new WebhookServer.Settings()
+            .address("127.0.0.1", 0)
+            .path(PATH)
+            .maxBodySize(4096),
+            received::addAll);
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testReceivesRecordedMessage() throws IOException {
+    assertThat(post(PATH, recorded("message.json"))).isEqualTo(200);
+    assertThat(received).hasSize(1);
+    final Update update = received.get(0);
+    assertThat(update.getUpdateId()).isEqualTo(100001);
+    assertThat(update.getMessage().getChatId()).isEqualTo(-1001234567890L);
+    assertThat(update.getMessage().getFrom().getId()).isEqualTo(42);
+    assertThat(update.getMessage().getText()).isEqualTo("/repeat 0 9 * * MON-FRI standup");
+    assertThat(registry.timer("webhook.receive.latency").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void testReceivesRecordedEditedMessage() throws IOException {
+    assertThat(post(PATH, recorded("edited_message.json"))).isEqualTo(200);
+    assertThat(received).hasSize(1);
+    assertThat(received.get(0).hasEditedMessage()).isTrue();
+    assertThat(received.get(0).getEditedMessage().getText()).isEqualTo("see you at lunch");
+  }
+
+  @Test
+  public void testReceivesRecordedCallback() throws IOException {
+    assertThat(post(PATH, recorded("callback_query.json"))).isEqualTo(200);
+    assertThat(received).hasSize(1);
+    assertThat(received.get(0).hasCallbackQuery()).isTrue();
+    assertThat(received.get(0).getCallbackQuery().getMessage().getChatId()).isEqualTo(-1001234567890L);
+  }
+
+  @Test
+  public void testIgnoresUnknownFields() throws IOException {
+    final String update = "{\"update_id\": 7, \"business_message\": {\"message_id\": 1}}";
+    assertThat(post(PATH, update.getBytes(StandardCharsets.UTF_8))).isEqualTo(200);
+    assertThat(received).hasSize(1);
+    assertThat(received.get(0).getUpdateId()).isEqualTo(7);
+  }
+
+  @Test
+  public void testRejectsOtherPaths() throws IOException {
+    assertThat(post("/", recorded("message.json"))).isEqualTo(404);
+    assertThat(post(PATH + "/more", recorded("message.json"))).isEqualTo(404);
+    assertThat(received).isEmpty();
+    assertThat(registry.counter("webhook.rejected").count()).isEqualTo(2);
+  }
+
+  @Test
+  public void testRejectsOtherMethods() throws IOException {
+    final HttpURLConnection connection = connect(PATH);
+    assertThat(connection.getResponseCode()).isEqualTo(405);
+    assertThat(received).isEmpty();
+  }
+
+  @Test
+  public void testRejectsMalformedUpdate() throws IOException {
+    assertThat(post(PATH, "{\"update_id\":".getBytes(StandardCharsets.UTF_8))).isEqualTo(400);
+    assertThat(received).isEmpty();
+  }
+
+  @Test
+  public void testRejectsLargeBody() throws IOException {
+    assertThat(post(PATH, new byte[8192])).isEqualTo(413);
+    assertThat(received).isEmpty();
+  }
+
+  @Test
+  public void testAsksForRedeliveryWhenHandlerFails() throws IOException {
+    server.close();
+    server = new WebhookServer(registry, new WebhookServer.Settings().address("127.0.0.1", 0).path(PATH),
+            updates -> {
+              throw new IllegalStateException("failed");
+            });
+    server.start();
+    assertThat(post(PATH, recorded("message.json"))).isEqualTo(503);
+    assertThat(registry.counter("webhook.failed").count()).isEqualTo(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRequiresAbsolutePath() {
+    new WebhookServer.Settings().path("secret");
+  }
+
+  private int post(final String path, final byte[] body) throws IOException {
+    final HttpURLConnection connection = connect(path);
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setDoOutput(true);
+    try (final OutputStream out = connection.getOutputStream()) {
+      out.write(body);
+    }
+    return connection.getResponseCode();
+  }
+
+  private HttpURLConnection connect(final String path) throws IOException {
+    return (HttpURLConnection) new URL("http://127.0.0.1:" + server.port() + path).openConnection();
+  }
+
+  private static byte[] recorded(final String name) throws IOException {
+    try (final InputStream in = WebhookServerTest.class.getResourceAsStream("/updates/" + name)) {
+      final byte[] buffer = new byte[8192];
+      int size = 0;
+      int read;
+      while ((read = in.read(buffer, size, buffer.length - size)) > 0) {
+        size += read;
+      }
+      final byte[] bytes = new byte[size];
+      System.arraycopy(buffer, 0, bytes, 0, size);
+      return bytes;
+    }
+  }
+
+}
@@ -0,0 +1,69 @@
+package ru.ustits.colleague.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ustits.colleague.tools.Threads;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of sends blocked on a simulated slow Telegram endpoint, run on
+ * a bounded platform pool and on virtual threads. On runtimes without
+ * virtual threads both modes use the pool. Sends only sleep, see
+ * {@link LaneQueryBenchmark} for updates blocked on the database.
+ *
+ * @author ustits
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BlockingSendBenchmark {
+
+  private static final int SENDS = 500;
+
+  @Param({"false", "true"})
+  private boolean virtual;
+
+  @Param({"20"})
+  private long latencyMillis;
+
+  @Param({"8"})
+  private int poolSize;
+
+  private ExecutorService executor;
+
+  @Setup
+  public void setUp() {
+    executor = Threads.executor("bench", virtual, poolSize, SENDS);
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * One operation is a burst of {@link #SENDS} sends, as when many repeats
+   * fire at the same minute.
+   */
+  @Benchmark
+  public void burst() throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(SENDS);
+    for (int i = 0; i < SENDS; i++) {
+      executor.execute(() -> {
+        try {
+          Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      });
+    }
+    done.await();
+  }
+
+}
@@ -0,0 +1,85 @@
+package ru.ustits.colleague.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.ustits.colleague.tools.ObjectIntMap;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares counting with {@link ObjectIntMap} and selecting the top with a
+ * bounded heap against the former {@code HashMap} counting followed by a full
+ * sort and limit. Run with {@code -prof gc} to compare allocation rates.
+ *
+ * @author ustits
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountingBenchmark {
+
+  private static final int TOP = 20;
+
+  @Param({"10000"})
+  private int size;
+
+  @Param({"100", "5000"})
+  private int distinct;
+
+  private List<String> values;
+
+  @Setup
+  public void setUp() {
+    final Random random = new Random(42);
+    values = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      values.add("word" + (int) Math.abs(random.nextGaussian() * distinct / 3) % distinct);
+    }
+  }
+
+  @Benchmark
+  public Map<String, Integer> toolkit() {
+    final ObjectIntMap<String> counts = new ObjectIntMap<>();
+    for (final String value : values) {
+      counts.increment(value);
+    }
+    return counts.top(TOP);
+  }
+
+  @Benchmark
+  public Map<String, Integer> naive() {
+    final Map<String, Integer> count = new HashMap<>();
+    for (final String value : values) {
+      final int counter;
+      if (count.containsKey(value)) {
+        counter = count.get(value) + 1;
+      } else {
+        counter = 1;
+      }
+      count.put(value, counter);
+    }
+    final Map<String, Integer> sorted = count.entrySet().stream()
+            .sorted(Map.Entry.comparingByValue(Collections.reverseOrder()))
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+    final Map<String, Integer> limited = new LinkedHashMap<>();
+    for (final Map.Entry<String, Integer> entry : sorted.entrySet()) {
+      limited.put(entry.getKey(), entry.getValue());
+      if (limited.size() >= TOP) {
+        break;
+      }
+    }
+    return limited;
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CountingBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
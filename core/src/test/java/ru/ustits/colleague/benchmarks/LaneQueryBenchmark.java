@@ -0,0 +1,137 @@
+package ru.ustits.colleague.benchmarks;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.ustits.colleague.UpdateDispatcher;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Throughput of updates whose handlers wait on the database, dispatched
+ * over {@link UpdateDispatcher} lanes running on platform or virtual
+ * threads. Every update holds its lane's connection for
+ * {@code latencyMillis}. {@code driver} selects how the connection guards
+ * its socket: {@code monitor} blocks inside {@code synchronized} as pgjdbc
+ * before 42.6 does, which pins a virtual thread to its carrier on Java 21,
+ * {@code lock} blocks holding a {@link ReentrantLock} as later versions do,
+ * and {@code jdbc} runs {@code pg_sleep} through the real driver against
+ * the database at {@code -Dbench.jdbc.url}, e.g.
+ * {@code -p driver=jdbc -jvmArgs -Dbench.jdbc.url=jdbc:postgresql://localhost/colleague}.
+ *
+ * @author ustits
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class LaneQueryBenchmark {
+
+  private static final int UPDATES = 500;
+
+  @Param({"false", "true"})
+  private boolean virtual;
+
+  @Param({"monitor", "lock"})
+  private String driver;
+
+  @Param({"64"})
+  private int lanes;
+
+  @Param({"10"})
+  private long latencyMillis;
+
+  private final ThreadLocal<Object> monitors = ThreadLocal.withInitial(Object::new);
+  private final ThreadLocal<ReentrantLock> locks = ThreadLocal.withInitial(ReentrantLock::new);
+  private UpdateDispatcher dispatcher;
+  private HikariDataSource dataSource;
+
+  @Setup
+  public void setUp() {
+    dispatcher = new UpdateDispatcher(new SimpleMeterRegistry(), lanes, UPDATES, virtual);
+    if ("jdbc".equals(driver)) {
+      final String url = System.getProperty("bench.jdbc.url");
+      if (url == null) {
+        throw new IllegalStateException("Set -Dbench.jdbc.url to run queries through the driver");
+      }
+      final HikariConfig config = new HikariConfig();
+      config.setJdbcUrl(url);
+      config.setUsername(System.getProperty("bench.jdbc.user", "postgres"));
+      config.setPassword(System.getProperty("bench.jdbc.password"));
+      config.setMaximumPoolSize(lanes);
+      dataSource = new HikariDataSource(config);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    dispatcher.close();
+    if (dataSource != null) {
+      dataSource.close();
+    }
+  }
+
+  /**
+   * One operation is a burst of {@link #UPDATES} updates from as many chats.
+   */
+  @Benchmark
+  public void burst() throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(UPDATES);
+    for (int i = 0; i < UPDATES; i++) {
+      dispatcher.execute(i, () -> {
+        try {
+          query();
+        } finally {
+          done.countDown();
+        }
+      });
+    }
+    done.await();
+  }
+
+  private void query() {
+    switch (driver) {
+      case "monitor":
+        synchronized (monitors.get()) {
+          sleep();
+        }
+        break;
+      case "lock":
+        final ReentrantLock lock = locks.get();
+        lock.lock();
+        try {
+          sleep();
+        } finally {
+          lock.unlock();
+        }
+        break;
+      case "jdbc":
+        try (final Connection connection = dataSource.getConnection();
+             final Statement statement = connection.createStatement()) {
+          statement.execute("SELECT pg_sleep(" + latencyMillis / 1000.0 + ")");
+        } catch (SQLException e) {
+          throw new IllegalStateException("Unable to run query", e);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown driver: " + driver);
+    }
+  }
+
+  private void sleep() {
+    try {
+      Thread.sleep(latencyMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,74 @@
+package ru.ustits.colleague.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.ustits.colleague.tools.StopWords;
+import ru.ustits.colleague.tools.Tokenizer;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Compares {@link Tokenizer} with {@link StopWords} against splitting on a
+ * regex, lowercasing every token and looking it up in a {@link HashSet}.
+ *
+ * @author ustits
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+  private static final String[] WORDS = {"и", "в", "не", "на", "что", "я", "с", "а", "the", "a", "to", "of"};
+
+  @Param({"Ну что, пойдём сегодня на обед в 13:00? Я за, а ты?",
+          "The quick brown fox jumps over the lazy dog, and then it RUNS away to the forest!"})
+  private String text;
+
+  private Tokenizer tokenizer;
+  private StopWords stopWords;
+  private Set<String> naiveStopWords;
+
+  @Setup
+  public void setUp() {
+    tokenizer = new Tokenizer();
+    stopWords = StopWords.of(WORDS);
+    naiveStopWords = new HashSet<>(asList(WORDS));
+  }
+
+  @Benchmark
+  public int tokenizer() {
+    final int[] words = new int[1];
+    tokenizer.tokenize(text, (word, length) -> {
+      if (!stopWords.contains(word, length)) {
+        words[0]++;
+      }
+    });
+    return words[0];
+  }
+
+  @Benchmark
+  public void naive(final Blackhole blackhole) {
+    for (final String token : text.split("[^\\p{L}\\p{N}]+")) {
+      final String word = token.toLowerCase(Locale.ROOT);
+      if (!word.isEmpty() && !naiveStopWords.contains(word)) {
+        blackhole.consume(word);
+      }
+    }
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TokenizerBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
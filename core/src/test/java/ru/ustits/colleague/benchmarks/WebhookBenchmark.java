@@ -0,0 +1,143 @@
+package ru.ustits.colleague.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.telegram.telegrambots.api.objects.Update;
+import ru.ustits.colleague.WebhookServer;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from an update being available to it reaching the bot on localhost.
+ * Webhook mode posts the update to {@link WebhookServer}. Polling mode runs
+ * a stub Bot API that holds {@code getUpdates} requests until an update is
+ * published, and a loop that requests, parses and dispatches the results as
+ * the long polling session does. Network distance to Telegram is left out:
+ * a waiting update travels one way in both modes, but the polling loop needs
+ * a round trip before it can receive the next one, while Telegram pushes to
+ * a webhook over several connections at once. Both servers run with
+ * {@code TCP_NODELAY}, otherwise delayed acknowledgements add about 40 ms to
+ * the polling responses.
+ *
+ * @author ustits
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class WebhookBenchmark {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String PATH = "/webhook";
+
+  private final BlockingQueue<Update> received = new LinkedBlockingQueue<>();
+  private final BlockingQueue<byte[]> published = new LinkedBlockingQueue<>();
+  private byte[] update;
+  private WebhookServer webhook;
+  private HttpServer api;
+  private Thread poller;
+  private volatile boolean polling;
+
+  @Setup
+  public void setUp() throws IOException {
+    update = ("{\"update_id\":1,\"message\":{\"message_id\":2,\"date\":1514764800," +
+            "\"chat\":{\"id\":-100,\"type\":\"supergroup\"},\"from\":{\"id\":42,\"first_name\":\"Ivan\"}," +
+            "\"text\":\"hello colleagues\"}}").getBytes(StandardCharsets.UTF_8);
+    webhook = new WebhookServer(new SimpleMeterRegistry(),
+            new WebhookServer.Settings().address("127.0.0.1", 0).path(PATH),
+            received::addAll);
+    webhook.start();
+    api = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    api.createContext("/getUpdates", this::getUpdates);
+    api.start();
+    polling = true;
+    poller = new Thread(this::poll, "poller");
+    poller.setDaemon(true);
+    poller.start();
+  }
+
+  @TearDown
+  public void tearDown() {
+    polling = false;
+    poller.interrupt();
+    api.stop(0);
+    webhook.close();
+  }
+
+  @Benchmark
+  public Update webhook() throws IOException, InterruptedException {
+    final HttpURLConnection connection = (HttpURLConnection)
+            new URL("http://127.0.0.1:" + webhook.port() + PATH).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (final OutputStream out = connection.getOutputStream()) {
+      out.write(update);
+    }
+    connection.getResponseCode();
+    connection.getInputStream().close();
+    return received.take();
+  }
+
+  @Benchmark
+  public Update polling() throws InterruptedException {
+    published.add(update);
+    return received.take();
+  }
+
+  private void getUpdates(final HttpExchange exchange) throws IOException {
+    try {
+      final byte[] next = published.poll(1, TimeUnit.SECONDS);
+      final byte[] body = next == null
+              ? "{\"ok\":true,\"result\":[]}".getBytes(StandardCharsets.UTF_8)
+              : concat("{\"ok\":true,\"result\":[", next, "]}");
+      exchange.sendResponseHeaders(200, body.length);
+      try (final OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void poll() {
+    while (polling) {
+      try {
+        final HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://127.0.0.1:" + api.getAddress().getPort() + "/getUpdates").openConnection();
+        try (final InputStream in = connection.getInputStream()) {
+          for (final JsonNode result : MAPPER.readTree(in).get("result")) {
+            received.add(MAPPER.treeToValue(result, Update.class));
+          }
+        }
+      } catch (IOException e) {
+        if (polling) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  private static byte[] concat(final String prefix, final byte[] value, final String suffix) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write(prefix.getBytes(StandardCharsets.UTF_8), 0, prefix.length());
+    bytes.write(value, 0, value.length);
+    bytes.write(suffix.getBytes(StandardCharsets.UTF_8), 0, suffix.length());
+    return bytes.toByteArray();
+  }
+
+}
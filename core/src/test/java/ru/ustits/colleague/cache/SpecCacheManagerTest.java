@@ -0,0 +1,85 @@
+package ru.ustits.colleague.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.ustits.colleague.RandomUtils.string;
+
+/**
+ * @author ustits
+ */
+public class SpecCacheManagerTest {
+
+  private Map<String, Object> properties;
+  private SpecCacheManager manager;
+
+  @Before
+  public void setUp() {
+    properties = new HashMap<>();
+    final StandardEnvironment environment = new StandardEnvironment();
+    environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+    manager = new SpecCacheManager(environment, new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void testDefaultSpec() {
+    assertThat(manager.spec(string())).isEqualTo(SpecCacheManager.DEFAULT_SPEC + ",recordStats");
+  }
+
+  @Test
+  public void testCacheSpec() {
+    properties.put("cache.default.spec", "maximumSize=10");
+    properties.put("cache.triggers.spec", "maximumWeight=10,recordStats");
+    assertThat(manager.spec("triggers")).isEqualTo("maximumWeight=10,recordStats");
+    assertThat(manager.spec("users")).isEqualTo("maximumSize=10,recordStats");
+  }
+
+  @Test
+  public void testSizeBoundedCacheEvicts() {
+    properties.put("cache.users.spec", "maximumSize=2");
+    final Cache cache = manager.getCache("users");
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, string());
+    }
+    final com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+            ((CaffeineCache) cache).getNativeCache();
+    nativeCache.cleanUp();
+    assertThat(nativeCache.estimatedSize()).isLessThanOrEqualTo(2);
+    assertThat(manager.stats().get("users").evictionCount()).isPositive();
+  }
+
+  @Test
+  public void testWeightedCacheWeighsCollections() {
+    properties.put("cache.triggers.spec", "maximumWeight=5");
+    final Cache cache = manager.getCache("triggers");
+    cache.put(1L, asList(string(), string(), string()));
+    cache.put(2L, asList(string(), string(), string()));
+    final com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+            ((CaffeineCache) cache).getNativeCache();
+    nativeCache.cleanUp();
+    assertThat(nativeCache.estimatedSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void testStats() {
+    final Cache cache = manager.getCache("chats");
+    cache.put(1L, string());
+    cache.get(1L);
+    cache.get(2L);
+    final CacheStats stats = manager.stats().get("chats");
+    assertThat(stats.hitCount()).isEqualTo(1);
+    assertThat(stats.missCount()).isEqualTo(1);
+  }
+
+}
@@ -0,0 +1,68 @@
+package ru.ustits.colleague.commands;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+import org.telegram.telegrambots.api.objects.Chat;
+import org.telegram.telegrambots.api.objects.User;
+import org.telegram.telegrambots.bots.AbsSender;
+import org.telegram.telegrambots.exceptions.TelegramApiException;
+import ru.ustits.colleague.services.DistinctCounter;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static ru.ustits.colleague.RandomUtils.aLong;
+import static ru.ustits.colleague.RandomUtils.string;
+
+/**
+ * @author ustits
+ */
+public class UniquesCommandTest {
+
+  private DistinctCounter counter;
+  private UniquesCommand command;
+
+  @Before
+  public void setUp() {
+    counter = mock(DistinctCounter.class);
+    command = new UniquesCommand(string(), string(), counter);
+  }
+
+  @Test
+  public void testReport() {
+    final Long chatId = aLong();
+    final LocalDate today = LocalDate.now();
+    when(counter.users(chatId, today.minusDays(2), today)).thenReturn(5L);
+    when(counter.words(chatId, today.minusDays(2), today)).thenReturn(120L);
+    assertThat(command.report(chatId, 3)).isEqualTo("Last 3 days: ~5 unique users, ~120 unique words");
+  }
+
+  @Test
+  public void testReportsUnavailableCounts() throws TelegramApiException {
+    final Long chatId = aLong();
+    final Chat chat = mock(Chat.class);
+    when(chat.getId()).thenReturn(chatId);
+    when(counter.users(eq(chatId), any(), any())).thenThrow(new IllegalArgumentException("Malformed counter"));
+    final AbsSender sender = mock(AbsSender.class);
+    command.execute(sender, mock(User.class), chat, new String[]{});
+    final ArgumentCaptor<SendMessage> message = ArgumentCaptor.forClass(SendMessage.class);
+    verify(sender).execute(message.capture());
+    assertThat(message.getValue().getText()).isEqualTo("Unique counts are unavailable");
+  }
+
+  @Test
+  public void testDays() {
+    assertThat(command.days(new String[]{"30"})).isEqualTo(30);
+    assertThat(command.days(new String[]{})).isEqualTo(7);
+    assertThat(command.days(new String[]{"-1"})).isEqualTo(7);
+    assertThat(command.days(new String[]{"week"})).isEqualTo(7);
+  }
+
+}
@@ -0,0 +1,227 @@
+package ru.ustits.colleague.migrations;
+
+import org.hibernate.dialect.PostgreSQL95Dialect;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryFactorySupport;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.RepositoryTest;
+import ru.ustits.colleague.repositories.IgnoreTriggerRepository;
+import ru.ustits.colleague.repositories.RepeatRepository;
+import ru.ustits.colleague.repositories.TriggerRepository;
+import ru.ustits.colleague.services.MessageReader;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class MigrationRunnerTest extends RepositoryTest {
+
+  private final List<String> statements = new CopyOnWriteArrayList<>();
+  private MigrationRunner runner;
+  private DataSource recording;
+
+  @Before
+  public void setUp() {
+    super.setUp();
+    runner = new MigrationRunner(sql.getDataSource());
+    recording = new RecordingDataSource(sql.getDataSource());
+  }
+
+  @Test
+  public void testMigrationsAreOrdered() {
+    assertThat(runner.migrations())
+            .extracting(Migration::getVersion)
+            .isNotEmpty()
+            .isSorted();
+  }
+
+  @Test
+  public void testScriptIsSplitIntoSteps() {
+    assertThat(MigrationRunner.steps("SELECT 1;\n-- commit\nSELECT 2;\n"))
+            .containsExactly("SELECT 1;\n", "\nSELECT 2;\n");
+  }
+
+  @Test
+  public void testMigrateIsIdempotent() {
+    final int applied = runner.migrate();
+    assertThat(applied).isEqualTo(runner.migrations().size());
+    assertThat(runner.migrate()).isZero();
+    assertThat(sql.queryForObject("SELECT count(*) FROM schema_version", Integer.class))
+            .isEqualTo(applied);
+  }
+
+  @Test
+  public void testMessagesArePartitioned() {
+    final Integer before = sql.queryForObject("SELECT count(*) FROM messages", Integer.class);
+    runner.migrate();
+    assertThat(sql.queryForObject("SELECT relkind::text FROM pg_class WHERE oid = 'messages'::regclass",
+            String.class)).isEqualTo("p");
+    assertThat(sql.queryForObject("SELECT count(*) FROM messages_legacy", Integer.class)).isEqualTo(before);
+    sql.update("INSERT INTO messages (msg_id, date, text, is_edited, chat_id, user_id) " +
+            "VALUES (1, now(), 'text', false, 1, 1)");
+    assertThat(sql.queryForObject("SELECT count(*) FROM messages", Integer.class)).isEqualTo(before + 1);
+  }
+
+  @Test
+  public void testRecentMessagesArePruned() {
+    runner.migrate();
+    assertThat(plan("SELECT * FROM messages WHERE date >= '2100-01-01'"))
+            .doesNotContain("messages_legacy");
+  }
+
+  @Test
+  public void testMessagesOfUserUseIndex() {
+    migrateWithData();
+    final MessageReader reader = new MessageReader(new JdbcTemplate(recording),
+            new TransactionTemplate(new DataSourceTransactionManager(recording)), 100);
+    reader.forEach(1L, 1L, new ArrayList<>()::add);
+    reader.page(1L, 1L, 10);
+    assertThat(recorded("from messages")).hasSize(2).allSatisfy(query ->
+            assertThat(plan(query)).contains("messages_legacy_chat_id_user_id_idx"));
+  }
+
+  @Test
+  public void testTriggersOfChatUseIndex() {
+    migrateWithData();
+    repositories().getRepository(TriggerRepository.class).findAllByChatId(1L);
+    assertThat(plan(recorded("from triggers").get(0))).contains("triggers_chat_id_idx");
+  }
+
+  @Test
+  public void testRepeatsOfChatUseIndex() {
+    migrateWithData();
+    repositories().getRepository(RepeatRepository.class).findAllByChatId(1L);
+    assertThat(plan(recorded("from repeats").get(0))).contains("repeats_chat_id_idx");
+  }
+
+  @Test
+  public void testIgnoresUseIndex() {
+    migrateWithData();
+    final IgnoreTriggerRepository ignores = repositories().getRepository(IgnoreTriggerRepository.class);
+    ignores.findUserIdsByChatId(1L);
+    ignores.existsByChatIdAndUserId(1L, 1L);
+    assertThat(recorded("from ignore_triggers")).hasSize(2).allSatisfy(query ->
+            assertThat(plan(query)).contains("ignore_triggers_chat_id_user_id_idx"));
+  }
+
+  /**
+   * Fills the tables with enough rows spread over chats and users for the
+   * planner to prefer the indexes under default settings.
+   */
+  private void migrateWithData() {
+    runner.migrate();
+    sql.update("INSERT INTO chats (id, title) SELECT i, 'chat' || i FROM generate_series(1, 1000) i " +
+            "ON CONFLICT DO NOTHING");
+    sql.update("INSERT INTO users (id, first_name) SELECT i, 'user' || i FROM generate_series(1, 100) i " +
+            "ON CONFLICT DO NOTHING");
+    sql.update("INSERT INTO messages (msg_id, date, text, is_edited, chat_id, user_id) " +
+            "SELECT i, localtimestamp - i * interval '1 minute', 'text' || i, i % 10 = 0, " +
+            "i % 100 + 1, i / 100 % 100 + 1 FROM generate_series(1, 100000) i");
+    sql.update("INSERT INTO triggers (trigger, message, chat_id, user_id) " +
+            "SELECT 'trigger' || i, 'message' || i, i % 1000 + 1, i % 100 + 1 FROM generate_series(1, 20000) i");
+    sql.update("INSERT INTO repeats (message, chat_id, user_id, cron) " +
+            "SELECT 'message' || i, i % 1000 + 1, i % 100 + 1, '0 9 * * *' FROM generate_series(1, 20000) i");
+    sql.update("INSERT INTO ignore_triggers (chat_id, user_id) " +
+            "SELECT i % 1000 + 1, i / 1000 + 1 FROM generate_series(1, 20000) i");
+    sql.execute("ANALYZE");
+  }
+
+  private RepositoryFactorySupport repositories() {
+    final Properties properties = new Properties();
+    properties.setProperty("hibernate.dialect", PostgreSQL95Dialect.class.getName());
+    final LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+    factory.setDataSource(recording);
+    factory.setPackagesToScan("ru.ustits.colleague.repositories.records");
+    factory.setPersistenceProvider(new HibernatePersistenceProvider());
+    factory.setJpaProperties(properties);
+    factory.afterPropertiesSet();
+    return new JpaRepositoryFactory(factory.getObject().createEntityManager());
+  }
+
+  private List<String> recorded(final String table) {
+    return statements.stream()
+            .filter(query -> query.toLowerCase().contains(table))
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * Explains the query as the application runs it, a prepared statement,
+   * with every parameter set to 1.
+   */
+  private String plan(final String query) {
+    final StringBuilder numbered = new StringBuilder();
+    int parameters = 0;
+    for (final char c : query.toCharArray()) {
+      if (c == '?') {
+        numbered.append('$').append(++parameters);
+      } else {
+        numbered.append(c);
+      }
+    }
+    final String arguments = parameters == 0 ? "" : "(" + String.join(", ", Collections.nCopies(parameters, "1")) + ")";
+    return sql.execute((ConnectionCallback<String>) connection -> {
+      try (final Statement statement = connection.createStatement()) {
+        statement.execute("PREPARE planned AS " + numbered);
+        final StringBuilder plan = new StringBuilder();
+        try (final ResultSet rows = statement.executeQuery("EXPLAIN EXECUTE planned" + arguments)) {
+          while (rows.next()) {
+            plan.append(rows.getString(1)).append('\n');
+          }
+        }
+        statement.execute("DEALLOCATE planned");
+        return plan.toString();
+      }
+    });
+  }
+
+  /**
+   * Data source that remembers the text of every prepared statement.
+   */
+  private final class RecordingDataSource extends DelegatingDataSource {
+
+    private RecordingDataSource(final DataSource target) {
+      super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      final Connection connection = super.getConnection();
+      return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+              (proxy, method, args) -> {
+                if (method.getName().equals("prepareStatement") && args != null && args[0] instanceof String) {
+                  statements.add((String) args[0]);
+                }
+                try {
+                  return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                  throw e.getCause();
+                }
+              });
+    }
+
+  }
+
+}
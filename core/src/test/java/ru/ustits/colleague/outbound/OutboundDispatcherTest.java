@@ -0,0 +1,251 @@
+package ru.ustits.colleague.outbound;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.telegram.telegrambots.api.methods.ParseMode;
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+import org.telegram.telegrambots.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class OutboundDispatcherTest {
+
+  private MeterRegistry registry;
+  private OutboundDispatcher dispatcher;
+  private List<String> sent;
+  private AtomicLong clock;
+
+  @Before
+  public void setUp() {
+    registry = new SimpleMeterRegistry();
+    clock = new AtomicLong();
+    sent = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @After
+  public void tearDown() {
+    if (dispatcher != null) {
+      dispatcher.close();
+    }
+  }
+
+  @Test
+  public void testChatsTakeTurns() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings()
+            .global(1000, 1000)
+            .chat(6000, 100));
+    for (int i = 0; i < 3; i++) {
+      dispatcher.submit(new SendMessage(-1L, "a" + i), this::record);
+    }
+    dispatcher.submit(new SendMessage(-2L, "b0"), this::record);
+    dispatcher.start();
+    dispatcher.close();
+    assertThat(sent).containsExactly("a0", "b0", "a1", "a2");
+    assertThat(registry.get("outbound.send.latency").timer().count()).isEqualTo(4);
+    assertThat(dispatcher.pending()).isZero();
+  }
+
+  @Test
+  public void testChatLimit() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings()
+            .global(1000, 1000)
+            .chat(60, 2), clock::get);
+    for (int i = 0; i < 3; i++) {
+      dispatcher.submit(new SendMessage(-1L, "a" + i), this::record);
+    }
+    dispatcher.submit(new SendMessage(-2L, "b0"), this::record);
+    dispatcher.sendReady();
+    assertThat(sent).containsExactly("a0", "b0", "a1");
+    assertThat(registry.get("outbound.queue.depth").gauge().value()).isEqualTo(1);
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+    dispatcher.sendReady();
+    assertThat(sent).doesNotContain("a2");
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    dispatcher.sendReady();
+    assertThat(sent).contains("a2");
+  }
+
+  @Test
+  public void testGroupLimitSkipsPrivateChats() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings()
+            .global(1000, 1000)
+            .chat(60, 1)
+            .privateChat(60, 3), clock::get);
+    for (int i = 0; i < 3; i++) {
+      dispatcher.submit(new SendMessage(1L, "a" + i), this::record);
+      dispatcher.submit(new SendMessage("@channel", "c" + i), this::record);
+    }
+    dispatcher.sendReady();
+    assertThat(sent).containsExactly("a0", "c0", "a1", "a2");
+  }
+
+  @Test
+  public void testHonoursRetryAfter() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings(),
+            clock::get);
+    final AtomicInteger calls = new AtomicInteger();
+    dispatcher.submit(new SendMessage(1L, "a"), message -> {
+      if (calls.incrementAndGet() == 1) {
+        throw error(429, "{\"retry_after\": 1}");
+      }
+      record(message);
+    });
+    dispatcher.sendReady();
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+    dispatcher.sendReady();
+    assertThat(sent).isEmpty();
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    dispatcher.sendReady();
+    assertThat(sent).containsExactly("a");
+    assertThat(registry.get("outbound.retries").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRetryAfterDoesNotUseAttempts() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings()
+            .retries(2, 10), clock::get);
+    final AtomicInteger calls = new AtomicInteger();
+    dispatcher.submit(new SendMessage(1L, "a"), message -> {
+      if (calls.incrementAndGet() <= 3) {
+        throw error(429, "{\"retry_after\": 1}");
+      }
+      record(message);
+    });
+    for (int i = 0; i < 4; i++) {
+      dispatcher.sendReady();
+      clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    }
+    assertThat(sent).containsExactly("a");
+    assertThat(registry.get("outbound.dropped").counter().count()).isZero();
+  }
+
+  @Test
+  public void testRetriesWithBackoffThenDrops() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings().retries(3, 10));
+    final AtomicInteger calls = new AtomicInteger();
+    dispatcher.submit(new SendMessage(1L, "a"), message -> {
+      calls.incrementAndGet();
+      throw error(502, "{}");
+    });
+    dispatcher.submit(new SendMessage(2L, "b"), message -> {
+      throw error(403, "{}");
+    });
+    dispatcher.start();
+    dispatcher.close();
+    assertThat(calls.get()).isEqualTo(3);
+    assertThat(registry.get("outbound.retries").counter().count()).isEqualTo(2);
+    assertThat(registry.get("outbound.dropped").counter().count()).isEqualTo(2);
+    assertThat(dispatcher.pending()).isZero();
+  }
+
+  @Test
+  public void testRejectsWhenFull() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings().capacity(1));
+    assertThat(dispatcher.submit(new SendMessage(1L, "a"), this::record)).isTrue();
+    assertThat(dispatcher.submit(new SendMessage(1L, "b"), this::record)).isFalse();
+  }
+
+  @Test
+  public void testRejectsWhenClosed() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings());
+    dispatcher.start();
+    dispatcher.close();
+    assertThat(dispatcher.submit(new SendMessage(1L, "a"), this::record)).isFalse();
+    assertThat(registry.get("outbound.dropped").counter().count()).isEqualTo(1);
+    assertThat(dispatcher.pending()).isZero();
+  }
+
+  @Test
+  public void testCoalescesChatMessages() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings().coalesce(100));
+    final MessageSender sender = this::record;
+    dispatcher.submit(new SendMessage(-1L, "a0"), sender);
+    dispatcher.submit(new SendMessage(-2L, "b0"), sender);
+    dispatcher.submit(new SendMessage(-1L, "a1"), sender);
+    dispatcher.submit(new SendMessage(-1L, "a2").enableMarkdown(true), sender);
+    dispatcher.submit(new SendMessage(-1L, "a3").enableMarkdown(true), sender);
+    dispatcher.start();
+    dispatcher.close();
+    assertThat(sent).containsExactlyInAnyOrder("a0\na1", "b0", "a2\na3");
+    assertThat(registry.get("outbound.coalesced").counter().count()).isEqualTo(2);
+    assertThat(dispatcher.pending()).isZero();
+  }
+
+  @Test
+  public void testCoalescesUpToTextLimit() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings().coalesce(100));
+    final MessageSender sender = this::record;
+    final String half = String.join("", Collections.nCopies(2048, "x"));
+    dispatcher.submit(new SendMessage(-1L, half), sender);
+    dispatcher.submit(new SendMessage(-1L, half), sender);
+    dispatcher.submit(new SendMessage(-1L, "tail"), sender);
+    dispatcher.start();
+    dispatcher.close();
+    assertThat(sent).containsExactly(half, half + "\ntail");
+  }
+
+  @Test
+  public void testCoalescingKeepsSubmittedMessages() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings().coalesce(100), clock::get);
+    final List<SendMessage> messages = new ArrayList<>();
+    final SendMessage first = new SendMessage(-1L, "a0").enableMarkdown(true);
+    final SendMessage second = new SendMessage(-1L, "a1").enableMarkdown(true);
+    final MessageSender sender = messages::add;
+    dispatcher.submit(first, sender);
+    dispatcher.submit(second, sender);
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    dispatcher.sendReady();
+    assertThat(messages).hasSize(1);
+    assertThat(messages.get(0)).isNotSameAs(first);
+    assertThat(messages.get(0).getText()).isEqualTo("a0\na1");
+    assertThat(messages.get(0).toString()).contains(ParseMode.MARKDOWN);
+    assertThat(first.getText()).isEqualTo("a0");
+    assertThat(second.getText()).isEqualTo("a1");
+  }
+
+  @Test
+  public void testSendsPartsWhenMergedMessageIsRejected() {
+    dispatcher = new OutboundDispatcher(registry, new OutboundDispatcher.Settings()
+            .chat(6000, 100)
+            .coalesce(100), clock::get);
+    final MessageSender sender = message -> {
+      if (message.getText().contains("\n")) {
+        throw error(400, "{}");
+      }
+      record(message);
+    };
+    for (int i = 0; i < 3; i++) {
+      dispatcher.submit(new SendMessage(-1L, "a" + i), sender);
+    }
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    dispatcher.sendReady();
+    assertThat(sent).containsExactly("a0", "a1", "a2");
+    assertThat(registry.get("outbound.dropped").counter().count()).isZero();
+    assertThat(dispatcher.pending()).isZero();
+  }
+
+  private void record(final SendMessage message) {
+    sent.add(message.getText());
+  }
+
+  private static TelegramApiRequestException error(final int code, final String parameters) {
+    return new TelegramApiRequestException("Error", new JSONObject(
+            "{\"ok\": false, \"error_code\": " + code + ", \"description\": \"error\", " +
+                    "\"parameters\": " + parameters + "}"));
+  }
+
+}
@@ -0,0 +1,37 @@
+package ru.ustits.colleague.outbound;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class TokenBucketTest {
+
+  private static final long SECOND = 1_000_000_000L;
+
+  @Test
+  public void testBurstThenRate() {
+    final TokenBucket bucket = TokenBucket.perSecond(2, 3, 0);
+    for (int i = 0; i < 3; i++) {
+      assertThat(bucket.delay(0)).isZero();
+      bucket.take(0);
+    }
+    assertThat(bucket.delay(0)).isEqualTo(SECOND / 2);
+    assertThat(bucket.delay(SECOND / 4)).isEqualTo(SECOND / 4);
+    assertThat(bucket.delay(SECOND / 2)).isZero();
+  }
+
+  @Test
+  public void testRefillIsCapped() {
+    final TokenBucket bucket = TokenBucket.perMinute(20, 2, 0);
+    bucket.take(0);
+    assertThat(bucket.isFull(0)).isFalse();
+    assertThat(bucket.isFull(3 * SECOND)).isTrue();
+    bucket.take(100 * SECOND);
+    bucket.take(100 * SECOND);
+    assertThat(bucket.delay(100 * SECOND)).isEqualTo(3 * SECOND);
+  }
+
+}
@@ -0,0 +1,95 @@
+package ru.ustits.colleague.repositories;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.ustits.colleague.repositories.records.TriggerRecord;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static ru.ustits.colleague.RandomUtils.string;
+
+/**
+ * @author ustits
+ */
+public class CacheEvictionTest {
+
+  private static final Long CHAT = 1L;
+  private static final Long OTHER_CHAT = 2L;
+  private static final Long USER = 1L;
+
+  private AnnotationConfigApplicationContext context;
+  private CacheManager cacheManager;
+  private TriggerRepository triggers;
+
+  @Before
+  public void setUp() {
+    context = new AnnotationConfigApplicationContext(CachingConfig.class);
+    cacheManager = context.getBean(CacheManager.class);
+    triggers = context.getBean(TriggerRepository.class);
+  }
+
+  @After
+  public void tearDown() {
+    context.close();
+  }
+
+  @Test
+  public void testTriggerSaveKeepsOtherChats() {
+    triggers.findAllByChatId(CHAT);
+    triggers.findAllByChatId(OTHER_CHAT);
+    triggers.save(new TriggerRecord(string(), string(), CHAT, USER));
+    assertThat(cached("triggers", CHAT)).isFalse();
+    assertThat(cached("triggers", OTHER_CHAT)).isTrue();
+  }
+
+  @Test
+  public void testTriggerDeleteKeepsOtherChats() {
+    triggers.findAllByChatId(CHAT);
+    triggers.findAllByChatId(OTHER_CHAT);
+    triggers.deleteByTriggerAndChatIdAndUserId(string(), CHAT, USER);
+    triggers.findAllByChatId(CHAT);
+    triggers.findAllByChatId(OTHER_CHAT);
+    final TriggerRepository target = context.getBean(CachingConfig.class).triggers;
+    verify(target, times(2)).findAllByChatId(CHAT);
+    verify(target, times(1)).findAllByChatId(OTHER_CHAT);
+  }
+
+  @Test
+  public void testTriggerEntityDeleteKeepsOtherChats() {
+    triggers.findAllByChatId(CHAT);
+    triggers.findAllByChatId(OTHER_CHAT);
+    triggers.delete(new TriggerRecord(string(), string(), CHAT, USER));
+    assertThat(cached("triggers", CHAT)).isFalse();
+    assertThat(cached("triggers", OTHER_CHAT)).isTrue();
+  }
+
+  private boolean cached(final String cache, final Object key) {
+    return cacheManager.getCache(cache).get(key) != null;
+  }
+
+  @Configuration
+  @EnableCaching
+  static class CachingConfig {
+
+    final TriggerRepository triggers = mock(TriggerRepository.class);
+
+    @Bean
+    public CacheManager cacheManager() {
+      return new ConcurrentMapCacheManager();
+    }
+
+    @Bean
+    public TriggerRepository triggerRepository() {
+      return triggers;
+    }
+
+  }
+
+}
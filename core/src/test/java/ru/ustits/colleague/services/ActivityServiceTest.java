@@ -0,0 +1,70 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.RepositoryTest;
+import ru.ustits.colleague.migrations.MigrationRunner;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+import ru.ustits.colleague.repositories.records.UserRecord;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.ustits.colleague.RandomUtils.string;
+
+/**
+ * @author ustits
+ */
+public class ActivityServiceTest extends RepositoryTest {
+
+  private static final long HOUR = 60 * 60 * 1000;
+
+  private ActivityService service;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    new MigrationRunner(sql.getDataSource()).migrate();
+    final TransactionTemplate transactions =
+            new TransactionTemplate(new DataSourceTransactionManager(sql.getDataSource()));
+    service = new ActivityService(sql, transactions);
+  }
+
+  @Test
+  public void testActivity() {
+    final Date now = new Date();
+    final Date dayAgo = new Date(now.getTime() - 24 * HOUR);
+    service.handle(asList(message(1L, now), message(1L, now), message(2L, dayAgo)));
+    final Map<UserRecord, Integer> lastHour = service.activity(1L, new Date(now.getTime() - HOUR),
+            new Date(now.getTime() + HOUR));
+    assertThat(lastHour).hasSize(1).containsValues(2);
+    final Map<UserRecord, Integer> lastDays = service.activity(1L, new Date(dayAgo.getTime() - HOUR),
+            new Date(now.getTime() + HOUR));
+    assertThat(lastDays).hasSize(2);
+  }
+
+  @Test
+  public void testBackfill() {
+    service.backfill();
+    final Map<UserRecord, Integer> result = service.activity(1L,
+            Timestamp.valueOf("2017-01-01 00:00:00"), Timestamp.valueOf("2017-01-04 00:00:00"));
+    assertThat(result).hasSize(3).containsValues(1);
+  }
+
+  @Test
+  public void testHour() {
+    final Timestamp hour = ActivityService.hour(Timestamp.valueOf("2017-01-01 12:34:56"));
+    assertThat(hour).isEqualTo(Timestamp.valueOf("2017-01-01 12:00:00"));
+  }
+
+  private MessageRecord message(final Long userId, final Date date) {
+    return new MessageRecord(1L, date, string(), false, 1L, userId);
+  }
+
+}
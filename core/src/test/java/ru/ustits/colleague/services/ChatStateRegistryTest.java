@@ -0,0 +1,83 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.ustits.colleague.repositories.ChatStateRepository;
+import ru.ustits.colleague.repositories.ChatsRepository;
+import ru.ustits.colleague.repositories.records.ChatRecord;
+import ru.ustits.colleague.repositories.records.ChatStateRecord;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ustits
+ */
+public class ChatStateRegistryTest {
+
+  private static final long CHAT = 1L;
+
+  private ChatsRepository chats;
+  private ChatStateRepository states;
+  private ChatStateRegistry registry;
+
+  @Before
+  public void setUp() {
+    chats = mock(ChatsRepository.class);
+    states = mock(ChatStateRepository.class);
+    when(states.findByChatId(any())).thenReturn(Optional.empty());
+    when(states.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    registry = new ChatStateRegistry(chats, states);
+  }
+
+  @Test
+  public void testLoadsStateOnce() {
+    final ChatRecord chat = new ChatRecord(CHAT, "chat");
+    when(chats.findById(CHAT)).thenReturn(Optional.of(
+            new ChatRecord(chat, new ChatStateRecord(chat, "periodic 20"))));
+    assertThat(registry.strategy(CHAT).state()).isEqualTo("periodic 20");
+    assertThat(registry.strategy(CHAT).state()).isEqualTo("periodic 20");
+    verify(chats, times(1)).findById(CHAT);
+  }
+
+  @Test
+  public void testDefaultsToAll() {
+    when(chats.findById(CHAT)).thenReturn(Optional.of(new ChatRecord(CHAT, "chat")));
+    assertThat(registry.strategy(CHAT).state()).isEqualTo("all");
+    when(chats.findById(2L)).thenReturn(Optional.empty());
+    assertThat(registry.strategy(2L).state()).isEqualTo("all");
+  }
+
+  @Test
+  public void testSwitchState() {
+    final ChatRecord chat = new ChatRecord(CHAT, "chat");
+    when(chats.findById(CHAT)).thenReturn(Optional.of(chat));
+    assertThat(registry.strategy(CHAT).state()).isEqualTo("all");
+    assertThat(registry.switchState(CHAT, "periodic 30")).isPresent();
+    assertThat(registry.strategy(CHAT).state()).isEqualTo("periodic 30");
+    verify(states).save(new ChatStateRecord(chat, "periodic 30"));
+    verify(chats).save(new ChatRecord(chat, new ChatStateRecord(chat, "periodic 30")));
+  }
+
+  @Test
+  public void testSwitchUpdatesExistingState() {
+    final ChatRecord chat = new ChatRecord(CHAT, "chat");
+    final ChatStateRecord state = new ChatStateRecord(chat, "all");
+    when(chats.findById(CHAT)).thenReturn(Optional.of(new ChatRecord(chat, state)));
+    assertThat(registry.switchState(CHAT, "first")).isPresent();
+    verify(states).save(new ChatStateRecord(state, "first"));
+    assertThat(registry.strategy(CHAT).state()).isEqualTo("first");
+  }
+
+  @Test
+  public void testIgnoresUnknownStateAndChat() {
+    assertThat(registry.switchState(CHAT, "sometimes")).isEmpty();
+    when(chats.findById(CHAT)).thenReturn(Optional.empty());
+    assertThat(registry.switchState(CHAT, "first")).isEmpty();
+    verify(states, never()).save(any());
+  }
+
+}
@@ -0,0 +1,57 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.RepositoryTest;
+import ru.ustits.colleague.migrations.MigrationRunner;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class DistinctCounterTest extends RepositoryTest {
+
+  private static final long DAY = 24 * 60 * 60 * 1000;
+
+  private DistinctCounter counter;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    new MigrationRunner(sql.getDataSource()).migrate();
+    counter = new DistinctCounter(new SketchStore(sql), new StandardEnvironment());
+  }
+
+  @Test
+  public void testUnionAcrossDays() {
+    final Date today = new Date();
+    final Date yesterday = new Date(today.getTime() - DAY);
+    final TransactionTemplate transactions =
+            new TransactionTemplate(new DataSourceTransactionManager(sql.getDataSource()));
+    transactions.execute(status -> {
+      counter.handle(asList(message(1L, "кот и пес", yesterday), message(2L, "кот", today),
+              message(2L, "мышь", today), new MessageRecord(1L, today, "правка", true, 1L, 3L)));
+      return null;
+    });
+    final LocalDate to = SketchStore.day(today);
+    assertThat(counter.users(1L, to, to)).isEqualTo(1);
+    assertThat(counter.users(1L, to.minusDays(1), to)).isEqualTo(2);
+    assertThat(counter.words(1L, to.minusDays(1), to)).isEqualTo(4);
+    assertThat(counter.words(2L, to.minusDays(1), to)).isZero();
+  }
+
+  private MessageRecord message(final Long userId, final String text, final Date date) {
+    return new MessageRecord(1L, date, text, false, 1L, userId);
+  }
+
+}
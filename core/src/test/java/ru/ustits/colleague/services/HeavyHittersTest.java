@@ -0,0 +1,77 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.RepositoryTest;
+import ru.ustits.colleague.migrations.MigrationRunner;
+import ru.ustits.colleague.repositories.StopWordRepository;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+import ru.ustits.colleague.repositories.records.StopWordRecord;
+import ru.ustits.colleague.tools.SpaceSaving;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author ustits
+ */
+public class HeavyHittersTest extends RepositoryTest {
+
+  private static final long DAY = 24 * 60 * 60 * 1000;
+
+  private TransactionTemplate transactions;
+  private HeavyHitters hitters;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    new MigrationRunner(sql.getDataSource()).migrate();
+    transactions = new TransactionTemplate(new DataSourceTransactionManager(sql.getDataSource()));
+    final StopWordRepository repository = mock(StopWordRepository.class);
+    when(repository.findAll()).thenReturn(singletonList(new StopWordRecord(1, "и")));
+    hitters = new HeavyHitters(new SketchStore(sql), new StopWordService(repository), new StandardEnvironment());
+  }
+
+  @Test
+  public void testTopAcrossDays() {
+    final Date today = new Date();
+    final Date yesterday = new Date(today.getTime() - DAY);
+    handle(asList(message(1L, "кот и пес", yesterday), message(2L, "кот", today)));
+    handle(singletonList(message(2L, "кот и мышь", today)));
+    final LocalDate to = SketchStore.day(today);
+    final List<SpaceSaving.Entry> words = hitters.topWords(1L, to.minusDays(1), to, 2);
+    assertThat(words).extracting(SpaceSaving.Entry::getKey).containsExactly("кот", "мышь");
+    assertThat(words.get(0).getCount()).isEqualTo(3);
+    assertThat(hitters.topUsers(1L, to.minusDays(1), to, 1))
+            .containsExactly(new SpaceSaving.Entry("2", 2, 0));
+    assertThat(hitters.topUsers(1L, to, to, 10)).hasSize(1);
+  }
+
+  @Test
+  public void testEmpty() {
+    assertThat(hitters.topWords(1L, LocalDate.now(), LocalDate.now(), 10)).isEmpty();
+  }
+
+  private void handle(final List<MessageRecord> batch) {
+    transactions.execute(status -> {
+      hitters.handle(batch);
+      return null;
+    });
+  }
+
+  private MessageRecord message(final Long userId, final String text, final Date date) {
+    return new MessageRecord(1L, date, text, false, 1L, userId);
+  }
+
+}
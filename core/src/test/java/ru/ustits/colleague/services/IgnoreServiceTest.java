@@ -0,0 +1,55 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.ustits.colleague.repositories.IgnoreTriggerRepository;
+import ru.ustits.colleague.repositories.records.IgnoreTriggerRecord;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ustits
+ */
+public class IgnoreServiceTest {
+
+  private static final Long CHAT = 1L;
+  private static final Long OTHER_CHAT = 2L;
+
+  private IgnoreTriggerRepository repository;
+  private IgnoreService service;
+
+  @Before
+  public void setUp() {
+    repository = mock(IgnoreTriggerRepository.class);
+    service = new IgnoreService(repository);
+  }
+
+  @Test
+  public void testLoadsChatOnce() {
+    when(repository.findUserIdsByChatId(CHAT)).thenReturn(Arrays.asList(10L, 11L));
+    when(repository.findUserIdsByChatId(OTHER_CHAT)).thenReturn(Collections.emptyList());
+    assertThat(service.isIgnored(CHAT, 10L)).isTrue();
+    assertThat(service.isIgnored(CHAT, 12L)).isFalse();
+    assertThat(service.isIgnored(OTHER_CHAT, 10L)).isFalse();
+    assertThat(service.isIgnored(CHAT, null)).isFalse();
+    verify(repository, times(1)).findUserIdsByChatId(CHAT);
+    verify(repository, times(1)).findUserIdsByChatId(OTHER_CHAT);
+  }
+
+  @Test
+  public void testToggle() {
+    when(repository.findUserIdsByChatId(CHAT)).thenReturn(Collections.emptyList());
+    assertThat(service.toggle(CHAT, 10L)).isTrue();
+    verify(repository).save(new IgnoreTriggerRecord(CHAT, 10L));
+    assertThat(service.isIgnored(CHAT, 10L)).isTrue();
+    assertThat(service.toggle(CHAT, 10L)).isFalse();
+    verify(repository).deleteByChatIdAndUserId(CHAT, 10L);
+    assertThat(service.isIgnored(CHAT, 10L)).isFalse();
+    verify(repository, times(1)).findUserIdsByChatId(CHAT);
+  }
+
+}
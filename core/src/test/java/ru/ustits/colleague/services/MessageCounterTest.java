@@ -0,0 +1,60 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.RepositoryTest;
+import ru.ustits.colleague.migrations.MigrationRunner;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import java.util.Date;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.ustits.colleague.RandomUtils.string;
+
+/**
+ * @author ustits
+ */
+public class MessageCounterTest extends RepositoryTest {
+
+  private MessageCounter counter;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    new MigrationRunner(sql.getDataSource()).migrate();
+    final TransactionTemplate transactions =
+            new TransactionTemplate(new DataSourceTransactionManager(sql.getDataSource()));
+    counter = new MessageCounter(sql, transactions, new StandardEnvironment());
+  }
+
+  @Test
+  public void testHandle() {
+    counter.handle(asList(message(1L, 1L), message(1L, 1L), message(2L, 1L)));
+    assertThat(count(1L, 1L)).isEqualTo(3);
+    assertThat(count(2L, 1L)).isEqualTo(1);
+  }
+
+  @Test
+  public void testBackfill() {
+    sql.update("DELETE FROM message_counts");
+    counter.backfill();
+    assertThat(count(1L, 1L)).isEqualTo(1);
+    assertThat(count(1L, 2L)).isEqualTo(1);
+    assertThat(count(1L, 3L)).isEqualTo(1);
+  }
+
+  private int count(final Long chatId, final Long userId) {
+    return sql.queryForObject("SELECT count FROM message_counts " +
+            "WHERE chat_id=? AND user_id=? AND is_edited=false", Integer.class, chatId, userId);
+  }
+
+  private MessageRecord message(final Long chatId, final Long userId) {
+    return new MessageRecord(1L, new Date(), string(), false, chatId, userId);
+  }
+
+}
@@ -0,0 +1,59 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.RepositoryTest;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class MessageReaderTest extends RepositoryTest {
+
+  private static final int FETCH_SIZE = 1;
+
+  private MessageReader reader;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    final TransactionTemplate transactions =
+            new TransactionTemplate(new DataSourceTransactionManager(sql.getDataSource()));
+    reader = new MessageReader(sql, transactions, FETCH_SIZE);
+    sql.update("INSERT INTO messages (msg_id, date, text, is_edited, chat_id, user_id) " +
+            "VALUES (4, '2017-01-04 12:00:00', 'text4', false, 1, 1)");
+  }
+
+  @Test
+  public void testForEachText() {
+    final List<String> texts = new ArrayList<>();
+    reader.forEachText(1L, 1L, texts::add);
+    assertThat(texts).containsOnly("text1", "text4");
+  }
+
+  @Test
+  public void testForEach() {
+    final List<MessageRecord> messages = new ArrayList<>();
+    reader.forEach(1L, 1L, messages::add);
+    assertThat(messages).extracting(MessageRecord::getMessageId).containsOnly(1L, 4L);
+  }
+
+  @Test
+  public void testPage() {
+    final List<MessageRecord> first = reader.page(1L, 1L, 1);
+    assertThat(first).extracting(MessageRecord::getText).containsExactly("text1");
+    final List<MessageRecord> second = reader.page(1L, 1L, MessageCursor.of(first.get(0)), 1);
+    assertThat(second).extracting(MessageRecord::getText).containsExactly("text4");
+    final List<MessageRecord> last = reader.page(1L, 1L, MessageCursor.of(second.get(0)), 1);
+    assertThat(last).isEmpty();
+  }
+
+}
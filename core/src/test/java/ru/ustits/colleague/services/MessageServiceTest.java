@@ -3,9 +3,9 @@ package ru.ustits.colleague.services;
 import org.junit.Before;
 import org.junit.Test;
 import ru.ustits.colleague.RepositoryTest;
-import ru.ustits.colleague.repositories.ChatsRepository;
+import ru.ustits.colleague.migrations.MigrationRunner;
 import ru.ustits.colleague.repositories.MessageRepository;
-import ru.ustits.colleague.repositories.UserRepository;
+import ru.ustits.colleague.repositories.records.UserRecord;
 
 import java.util.Map;
 
@@ -23,14 +23,17 @@ public class MessageServiceTest extends RepositoryTest {
   @Before
   public void setUp() {
     super.setUp();
-    service = new MessageService(sql, mock(MessageRepository.class), mock(ChatsRepository.class),
-            mock(UserRepository.class));
+    new MigrationRunner(sql.getDataSource()).migrate();
+    service = new MessageService(sql, mock(MessageRepository.class), mock(MessageWriter.class),
+            mock(RegistrationService.class));
   }
 
   @Test
   public void testCount() {
-    final Map<String, Integer> result = service.count(1L, false);
-    assertThat(result).containsOnlyKeys("name1", "name2", "name3").containsValues(1);
+    final Map<UserRecord, Integer> result = service.count(1L, false);
+    assertThat(result.keySet()).extracting(UserRecord::getFirstName)
+            .containsOnly("name1", "name2", "name3");
+    assertThat(result).containsValues(1);
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+package ru.ustits.colleague.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static ru.ustits.colleague.RandomUtils.aLong;
+import static ru.ustits.colleague.RandomUtils.string;
+
+/**
+ * @author ustits
+ */
+public class MessageWriterTest {
+
+  private static final int CAPACITY = 4;
+  private static final int BATCH_SIZE = 2;
+  private static final long NEVER = 60_000L;
+
+  private JdbcTemplate sql;
+  private MessageBatchHandler handler;
+  private AtomicLong clock;
+  private MessageWriter writer;
+
+  @Before
+  public void setUp() {
+    clock = new AtomicLong();
+    sql = mock(JdbcTemplate.class);
+    handler = mock(MessageBatchHandler.class);
+    writer = writer(CAPACITY);
+  }
+
+  @Test
+  public void testEnqueueDoesNotWrite() {
+    writer.enqueue(message());
+    assertThat(writer.pending()).isEqualTo(1);
+    verifyZeroInteractions(sql);
+  }
+
+  @Test
+  public void testFlushWritesInBatches() {
+    for (int i = 0; i < 3; i++) {
+      writer.enqueue(message());
+    }
+    writer.close();
+    assertThat(writer.pending()).isZero();
+    verify(sql, times(2)).batchUpdate(anyString(), anyCollection(), eq(BATCH_SIZE),
+            any(ParameterizedPreparedStatementSetter.class));
+  }
+
+  @Test
+  public void testDropsWhenQueueIsFull() {
+    final MeterRegistry registry = new SimpleMeterRegistry();
+    writer = new MessageWriter(sql, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            singletonList(handler), registry, 1, BATCH_SIZE, NEVER, clock::get);
+    writer.enqueue(message());
+    writer.enqueue(message());
+    assertThat(writer.pending()).isEqualTo(1);
+    assertThat(registry.counter("messages.dropped").count()).isEqualTo(1);
+    verifyZeroInteractions(sql);
+  }
+
+  @Test
+  public void testCloseFlushesPendingMessages() {
+    writer.enqueue(message());
+    writer.close();
+    assertThat(writer.pending()).isZero();
+    verify(sql).batchUpdate(anyString(), anyCollection(), eq(BATCH_SIZE),
+            any(ParameterizedPreparedStatementSetter.class));
+  }
+
+  @Test
+  public void testHandlersReceiveBatch() {
+    final MessageRecord message = message();
+    writer.enqueue(message);
+    writer.flush();
+    verify(handler).handle(singletonList(message));
+  }
+
+  @Test
+  public void testRetriesBatchWhenDatabaseIsUnavailable() {
+    when(sql.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new QueryTimeoutException("timeout"))
+            .thenReturn(new int[0][]);
+    writer.enqueue(message());
+    writer.enqueue(message());
+    writer.flush();
+    assertThat(writer.pending()).isEqualTo(2);
+    writer.flush();
+    verify(sql, times(1)).batchUpdate(anyString(), anyCollection(), anyInt(),
+            any(ParameterizedPreparedStatementSetter.class));
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(NEVER));
+    writer.flush();
+    assertThat(writer.pending()).isZero();
+    verify(sql, times(2)).batchUpdate(anyString(), argThat((Collection<MessageRecord> batch) -> batch.size() == 2),
+            anyInt(), any(ParameterizedPreparedStatementSetter.class));
+  }
+
+  @Test
+  public void testKeepsQueueWhileRetryIsPending() {
+    when(sql.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new QueryTimeoutException("timeout"))
+            .thenReturn(new int[0][]);
+    writer.enqueue(message());
+    writer.flush();
+    writer.enqueue(message());
+    writer.flush();
+    assertThat(writer.pending()).isEqualTo(2);
+    verify(sql, times(1)).batchUpdate(anyString(), anyCollection(), anyInt(),
+            any(ParameterizedPreparedStatementSetter.class));
+  }
+
+  @Test
+  public void testSkipsOnlyBrokenMessage() {
+    final MessageRecord broken = message();
+    final MessageRecord valid = message();
+    when(sql.batchUpdate(anyString(), argThat((Collection<MessageRecord> batch) -> batch.contains(broken)),
+            anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new DataIntegrityViolationException("broken"));
+    writer.enqueue(broken);
+    writer.enqueue(valid);
+    for (int i = 0; i < 5; i++) {
+      writer.flush();
+      clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+    }
+    assertThat(writer.pending()).isZero();
+    verify(handler).handle(singletonList(valid));
+    verify(handler, never()).handle(singletonList(broken));
+  }
+
+  @Test
+  public void testRetriesKeepOrder() {
+    final MessageRecord first = message();
+    final MessageRecord second = message();
+    final AtomicInteger failures = new AtomicInteger();
+    when(sql.batchUpdate(anyString(), argThat((Collection<MessageRecord> batch) -> batch.contains(first)),
+            anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenAnswer(invocation -> {
+              if (failures.incrementAndGet() <= 2) {
+                throw new DataIntegrityViolationException("broken");
+              }
+              return new int[0][];
+            });
+    writer.enqueue(first);
+    writer.enqueue(second);
+    for (int i = 0; i < 3; i++) {
+      writer.flush();
+      clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+    }
+    assertThat(writer.pending()).isZero();
+    final InOrder order = inOrder(handler);
+    order.verify(handler).handle(singletonList(first));
+    order.verify(handler).handle(singletonList(second));
+  }
+
+  @Test
+  public void testHandlerFailureKeepsMessages() {
+    doThrow(new IllegalArgumentException("malformed")).when(handler).handle(anyList());
+    writer.enqueue(message());
+    writer.flush();
+    assertThat(writer.pending()).isZero();
+    verify(sql).batchUpdate(anyString(), anyCollection(), eq(BATCH_SIZE),
+            any(ParameterizedPreparedStatementSetter.class));
+  }
+
+  @Test
+  public void testHandlersRunInSeparateTransactions() {
+    final PlatformTransactionManager manager = mock(PlatformTransactionManager.class);
+    final MessageBatchHandler failing = mock(MessageBatchHandler.class);
+    doThrow(new IllegalArgumentException("malformed")).when(failing).handle(anyList());
+    writer = new MessageWriter(sql, new TransactionTemplate(manager), asList(failing, handler),
+            new SimpleMeterRegistry(), CAPACITY, BATCH_SIZE, NEVER, clock::get);
+    final MessageRecord message = message();
+    writer.enqueue(message);
+    writer.flush();
+    verify(handler).handle(singletonList(message));
+    verify(manager, times(2)).commit(any());
+    verify(manager).rollback(any());
+  }
+
+  @Test
+  public void testTransactionalHandlerRunsWithInsert() {
+    final PlatformTransactionManager manager = mock(PlatformTransactionManager.class);
+    final MessageBatchHandler counter = mock(MessageBatchHandler.class);
+    when(counter.transactional()).thenReturn(true);
+    doThrow(new QueryTimeoutException("timeout")).doNothing().when(counter).handle(anyList());
+    writer = new MessageWriter(sql, new TransactionTemplate(manager), asList(counter, handler),
+            new SimpleMeterRegistry(), CAPACITY, BATCH_SIZE, NEVER, clock::get);
+    final MessageRecord message = message();
+    writer.enqueue(message);
+    writer.flush();
+    assertThat(writer.pending()).isEqualTo(1);
+    verify(manager).rollback(any());
+    verify(handler, never()).handle(anyList());
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(NEVER));
+    writer.flush();
+    assertThat(writer.pending()).isZero();
+    verify(counter, times(2)).handle(singletonList(message));
+    verify(handler).handle(singletonList(message));
+    verify(manager, times(2)).commit(any());
+  }
+
+  private MessageWriter writer(final int capacity) {
+    final TransactionTemplate transactions = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    final List<MessageBatchHandler> handlers = singletonList(handler);
+    return new MessageWriter(sql, transactions, handlers, new SimpleMeterRegistry(),
+            capacity, BATCH_SIZE, NEVER, clock::get);
+  }
+
+  private MessageRecord message() {
+    return new MessageRecord(aLong(), new Date(), string(), false, aLong(), aLong());
+  }
+
+}
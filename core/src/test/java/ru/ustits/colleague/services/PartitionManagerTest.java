@@ -0,0 +1,84 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.RepositoryTest;
+import ru.ustits.colleague.migrations.MigrationRunner;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class PartitionManagerTest extends RepositoryTest {
+
+  private PartitionManager manager;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    new MigrationRunner(sql.getDataSource()).migrate();
+    final TransactionTemplate transactions =
+            new TransactionTemplate(new DataSourceTransactionManager(sql.getDataSource()));
+    manager = new PartitionManager(sql, transactions, new StandardEnvironment());
+  }
+
+  @Test
+  public void testCreatePartitions() {
+    manager.createPartitions(2);
+    final String name = LocalDate.now().plusMonths(2).format(DateTimeFormatter.ofPattern("'messages_'yyyy_MM"));
+    assertThat(manager.partitions()).containsKeys("messages_legacy", name);
+  }
+
+  @Test
+  public void testCreatePartitionsIsIdempotent() {
+    manager.createPartitions(2);
+    final int partitions = manager.partitions().size();
+    manager.createPartitions(2);
+    assertThat(manager.partitions()).hasSize(partitions);
+  }
+
+  @Test
+  public void testCreatePartitionsMovesRowsOutOfDefault() {
+    final LocalDate month = LocalDate.now().plusMonths(2).withDayOfMonth(1);
+    sql.update("INSERT INTO messages (msg_id, date, text, is_edited, chat_id, user_id) " +
+            "VALUES (1, ?, 'text', false, NULL, NULL)", Timestamp.valueOf(month.atTime(12, 0)));
+    manager.createPartitions(2);
+    final String name = month.format(DateTimeFormatter.ofPattern("'messages_'yyyy_MM"));
+    assertThat(manager.partitions()).containsKey(name);
+    assertThat(sql.queryForObject("SELECT count(*) FROM " + name, Integer.class)).isEqualTo(1);
+    assertThat(sql.queryForObject("SELECT count(*) FROM messages_default", Integer.class)).isZero();
+  }
+
+  @Test
+  public void testCreatePartitionsFillsMonthsSinceLastPartition() {
+    manager.dropPartitions(LocalDateTime.now().plusMonths(3));
+    final LocalDate month = LocalDate.now().minusMonths(3).withDayOfMonth(1);
+    sql.execute(String.format("CREATE TABLE messages_old PARTITION OF messages FOR VALUES FROM ('%s') TO ('%s')",
+            month.minusMonths(1), month));
+    manager.createPartitions(0);
+    assertThat(manager.partitions()).containsKeys(
+            month.format(DateTimeFormatter.ofPattern("'messages_'yyyy_MM")),
+            month.plusMonths(2).format(DateTimeFormatter.ofPattern("'messages_'yyyy_MM")));
+  }
+
+  @Test
+  public void testDropPartitions() {
+    manager.createPartitions(1);
+    final int partitions = manager.partitions().size();
+    assertThat(manager.dropPartitions(LocalDateTime.now().minusYears(1))).isZero();
+    assertThat(manager.dropPartitions(LocalDateTime.now().plusMonths(3))).isEqualTo(partitions);
+    assertThat(manager.partitions()).isEmpty();
+    assertThat(sql.queryForObject("SELECT count(*) FROM messages", Integer.class)).isZero();
+  }
+
+}
@@ -0,0 +1,104 @@
+package ru.ustits.colleague.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.telegram.telegrambots.api.objects.Chat;
+import org.telegram.telegrambots.api.objects.User;
+import ru.ustits.colleague.cache.SpecCacheManager;
+import ru.ustits.colleague.repositories.ChatsRepository;
+import ru.ustits.colleague.repositories.UserRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static ru.ustits.colleague.RandomUtils.*;
+
+/**
+ * @author ustits
+ */
+public class RegistrationServiceTest {
+
+  private ChatsRepository chatsRepository;
+  private UserRepository userRepository;
+  private Map<String, Object> properties;
+  private RegistrationService service;
+
+  @Before
+  public void setUp() {
+    chatsRepository = mock(ChatsRepository.class);
+    userRepository = mock(UserRepository.class);
+    properties = new HashMap<>();
+    service = service();
+  }
+
+  @Test
+  public void testRegisterChatOnce() {
+    final Chat chat = chat(aLong(), string());
+    assertThat(service.register(chat)).isEqualTo(chat.getId());
+    service.register(chat);
+    verify(chatsRepository).upsert(chat.getId(), chat.getTitle());
+  }
+
+  @Test
+  public void testRegisterRenamedChat() {
+    final Long chatId = aLong();
+    service.register(chat(chatId, string()));
+    service.register(chat(chatId, string()));
+    verify(chatsRepository, times(2)).upsert(eq(chatId), any());
+  }
+
+  @Test
+  public void testRegisterUserOnce() {
+    final User user = user(aPositiveInt(), string());
+    assertThat(service.register(user)).isEqualTo(user.getId().longValue());
+    service.register(user);
+    verify(userRepository).upsert(anyLong(), any(), any(), any());
+  }
+
+  @Test
+  public void testRegisterRenamedUser() {
+    final Integer userId = aPositiveInt();
+    service.register(user(userId, string()));
+    service.register(user(userId, string()));
+    verify(userRepository, times(2)).upsert(eq(userId.longValue()), any(), any(), any());
+  }
+
+  @Test
+  public void testRegisterEvictedChatAgain() {
+    properties.put("cache." + RegistrationService.CHATS + ".spec", "expireAfterWrite=0s");
+    service = service();
+    final Chat chat = chat(aLong(), string());
+    service.register(chat);
+    service.register(chat);
+    verify(chatsRepository, times(2)).upsert(chat.getId(), chat.getTitle());
+  }
+
+  private RegistrationService service() {
+    final StandardEnvironment environment = new StandardEnvironment();
+    environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+    return new RegistrationService(chatsRepository, userRepository,
+            new SpecCacheManager(environment, new SimpleMeterRegistry()));
+  }
+
+  private Chat chat(final Long id, final String title) {
+    final Chat chat = mock(Chat.class);
+    when(chat.getId()).thenReturn(id);
+    when(chat.getTitle()).thenReturn(title);
+    return chat;
+  }
+
+  private User user(final Integer id, final String firstName) {
+    final User user = mock(User.class);
+    when(user.getId()).thenReturn(id);
+    when(user.getFirstName()).thenReturn(firstName);
+    return user;
+  }
+
+}
@@ -0,0 +1,49 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.ustits.colleague.repositories.StopWordRepository;
+import ru.ustits.colleague.repositories.records.StopWordRecord;
+import ru.ustits.colleague.tools.StopWords;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author ustits
+ */
+public class StopWordServiceTest {
+
+  private StopWordRepository repository;
+  private StopWordService service;
+
+  @Before
+  public void setUp() {
+    repository = mock(StopWordRepository.class);
+    service = new StopWordService(repository);
+  }
+
+  @Test
+  public void testCompilesOnce() {
+    final List<StopWordRecord> records = asList(new StopWordRecord(1, "и"), new StopWordRecord(2, "а"));
+    when(repository.findAll()).thenReturn(records);
+    final StopWords words = service.stopWords();
+    assertThat(words.contains("и")).isTrue();
+    assertThat(service.stopWords()).isSameAs(words);
+  }
+
+  @Test
+  public void testRecompilesWhenRecordsChange() {
+    when(repository.findAll()).thenReturn(singletonList(new StopWordRecord(1, "и")));
+    final StopWords words = service.stopWords();
+    when(repository.findAll()).thenReturn(singletonList(new StopWordRecord(2, "а")));
+    assertThat(service.stopWords()).isNotSameAs(words);
+    assertThat(service.stopWords().contains("а")).isTrue();
+  }
+
+}
@@ -0,0 +1,90 @@
+package ru.ustits.colleague.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.dao.QueryTimeoutException;
+import ru.ustits.colleague.repositories.TriggerRepository;
+import ru.ustits.colleague.repositories.records.TriggerRecord;
+
+import java.util.Collections;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ustits
+ */
+public class TriggerServiceTest {
+
+  private static final Long CHAT = 1L;
+  private static final Long USER = 2L;
+
+  private TriggerRepository repository;
+  private TriggerService service;
+
+  @Before
+  public void setUp() {
+    repository = mock(TriggerRepository.class);
+    final StandardEnvironment env = new StandardEnvironment();
+    env.getPropertySources().addFirst(new MapPropertySource("test",
+            Collections.singletonMap("triggers.rebuild.delay", "50")));
+    service = new TriggerService(repository, env);
+  }
+
+  @After
+  public void tearDown() {
+    service.stop();
+  }
+
+  @Test
+  public void testLoadsSnapshotOnce() {
+    final TriggerRecord hello = new TriggerRecord("hello", "hi", CHAT, USER);
+    when(repository.findAllByChatId(CHAT)).thenReturn(singletonList(hello));
+    assertThat(service.match(CHAT, "Hello there")).containsExactly(hello);
+    assertThat(service.match(CHAT, "nothing")).isEmpty();
+    verify(repository, times(1)).findAllByChatId(CHAT);
+  }
+
+  @Test
+  public void testCoalescesRebuilds() {
+    final TriggerRecord hello = new TriggerRecord("hello", "hi", CHAT, USER);
+    when(repository.findAllByChatId(CHAT)).thenReturn(Collections.emptyList());
+    assertThat(service.match(CHAT, "hello")).isEmpty();
+    when(repository.findAllByChatId(CHAT)).thenReturn(singletonList(hello));
+    for (int i = 0; i < 10; i++) {
+      service.add(new TriggerRecord("hello" + i, "hi", CHAT, USER));
+    }
+    verify(repository, timeout(1000).times(2)).findAllByChatId(CHAT);
+    verify(repository, after(200).times(2)).findAllByChatId(CHAT);
+    assertThat(service.match(CHAT, "hello")).containsExactly(hello);
+  }
+
+  @Test
+  public void testRebuildFailureReloadsOnDemand() {
+    final TriggerRecord hello = new TriggerRecord("hello", "hi", CHAT, USER);
+    when(repository.findAllByChatId(CHAT))
+            .thenReturn(singletonList(hello))
+            .thenThrow(new QueryTimeoutException("timeout"))
+            .thenReturn(Collections.emptyList());
+    assertThat(service.match(CHAT, "hello")).containsExactly(hello);
+    service.rebuild(CHAT);
+    assertThat(service.match(CHAT, "hello")).isEmpty();
+  }
+
+  @Test
+  public void testRebuildDropsSnapshotOnAnyFailure() {
+    final TriggerRecord hello = new TriggerRecord("hello", "hi", CHAT, USER);
+    when(repository.findAllByChatId(CHAT))
+            .thenReturn(singletonList(hello))
+            .thenThrow(new IllegalStateException("broken"))
+            .thenReturn(Collections.emptyList());
+    assertThat(service.match(CHAT, "hello")).containsExactly(hello);
+    service.rebuild(CHAT);
+    assertThat(service.match(CHAT, "hello")).isEmpty();
+  }
+
+}
@@ -0,0 +1,80 @@
+package ru.ustits.colleague.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ustits.colleague.RepositoryTest;
+import ru.ustits.colleague.migrations.MigrationRunner;
+import ru.ustits.colleague.repositories.StopWordRepository;
+import ru.ustits.colleague.repositories.records.MessageRecord;
+import ru.ustits.colleague.repositories.records.StopWordRecord;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author ustits
+ */
+public class WordCounterTest extends RepositoryTest {
+
+  private WordCounter counter;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    new MigrationRunner(sql.getDataSource()).migrate();
+    final TransactionTemplate transactions =
+            new TransactionTemplate(new DataSourceTransactionManager(sql.getDataSource()));
+    final StopWordRepository repository = mock(StopWordRepository.class);
+    when(repository.findAll()).thenReturn(singletonList(new StopWordRecord(1, "и")));
+    final Map<String, Object> properties = new HashMap<>();
+    properties.put("words.per.user", true);
+    properties.put("words.backfill.chunk", 2);
+    final StandardEnvironment env = new StandardEnvironment();
+    env.getPropertySources().addFirst(new MapPropertySource("test", properties));
+    counter = new WordCounter(sql, transactions, new StopWordService(repository), env);
+  }
+
+  @Test
+  public void testTop() {
+    counter.handle(asList(message(1L, "Кот и пёс"), message(1L, "кот, КОТ и пес"), message(2L, "пес")));
+    assertThat(counter.top(1L, 2)).containsOnly(entry("кот", 3L), entry("пес", 3L));
+    assertThat(counter.top(1L, 2L, 10)).containsOnly(entry("пес", 1L));
+  }
+
+  @Test
+  public void testEditedMessagesAreNotCounted() {
+    counter.handle(singletonList(new MessageRecord(1L, new Date(), "кот", true, 1L, 1L)));
+    assertThat(counter.top(1L, 10)).isEmpty();
+  }
+
+  @Test
+  public void testBackfillResumesByChunks() {
+    assertThat(counter.backfillChunk()).isTrue();
+    assertThat(counter.top(1L, 10)).hasSize(2);
+    assertThat(counter.backfillChunk()).isFalse();
+    assertThat(counter.top(1L, 10)).containsOnlyKeys("text1", "text2", "text3");
+    assertThat(counter.backfillChunk()).isFalse();
+    assertThat(counter.top(1L, 10)).containsValues(1L, 1L, 1L);
+  }
+
+  private static Map.Entry<String, Long> entry(final String word, final Long count) {
+    return new HashMap.SimpleEntry<>(word, count);
+  }
+
+  private MessageRecord message(final Long userId, final String text) {
+    return new MessageRecord(1L, new Date(), text, false, 1L, userId);
+  }
+
+}
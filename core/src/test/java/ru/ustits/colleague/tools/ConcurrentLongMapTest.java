@@ -0,0 +1,78 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class ConcurrentLongMapTest {
+
+  @Test
+  public void testPutAndGet() {
+    final ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+    assertThat(map.get(0L)).isNull();
+    assertThat(map.put(0L, "zero")).isNull();
+    assertThat(map.put(-1L, "minus")).isNull();
+    assertThat(map.put(0L, "nil")).isEqualTo("zero");
+    assertThat(map.get(0L)).isEqualTo("nil");
+    assertThat(map.get(-1L)).isEqualTo("minus");
+    assertThat(map.putIfAbsent(-1L, "other")).isEqualTo("minus");
+    assertThat(map.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testResize() {
+    final ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(2);
+    for (long i = 1; i <= 1000; i++) {
+      map.put(i * 1_000_000_007L, i);
+    }
+    assertThat(map.size()).isEqualTo(1000);
+    for (long i = 1; i <= 1000; i++) {
+      assertThat(map.get(i * 1_000_000_007L)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void testComputeIfAbsentKeepsFirstValue() {
+    final ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+    final AtomicInteger calls = new AtomicInteger();
+    assertThat(map.computeIfAbsent(5L, key -> "v" + calls.incrementAndGet())).isEqualTo("v1");
+    assertThat(map.computeIfAbsent(5L, key -> "v" + calls.incrementAndGet())).isEqualTo("v1");
+    assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testConcurrentWritersAndReaders() throws Exception {
+    final ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        final long offset = t;
+        futures.add(executor.submit(() -> {
+          for (long i = 0; i < 5000; i++) {
+            final long key = i * 4 + offset;
+            map.put(key, key);
+            assertThat(map.get(key)).isEqualTo(key);
+          }
+        }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(map.size()).isEqualTo(20_000);
+  }
+
+}
@@ -0,0 +1,105 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author ustits
+ */
+public class HyperLogLogTest {
+
+  @Test
+  public void testSmallCardinalities() {
+    final HyperLogLog counter = new HyperLogLog(12);
+    assertThat(counter.estimate()).isZero();
+    for (int i = 0; i < 3; i++) {
+      counter.add(1L);
+      counter.add(2L);
+      counter.add(3L);
+    }
+    assertThat(counter.estimate()).isEqualTo(3);
+  }
+
+  @Test
+  public void testLargeCardinalities() {
+    final HyperLogLog counter = new HyperLogLog(12);
+    for (int i = 0; i < 100_000; i++) {
+      counter.add("word" + i);
+    }
+    assertThat((double) counter.estimate()).isCloseTo(100_000, within(5_000.0));
+  }
+
+  @Test
+  public void testStringAndBufferHashesMatch() {
+    final HyperLogLog counter = new HyperLogLog(4);
+    counter.add("слово");
+    counter.add("слово!".toCharArray(), 5);
+    assertThat(counter.estimate()).isEqualTo(1);
+  }
+
+  @Test
+  public void testMerge() {
+    final HyperLogLog first = new HyperLogLog(10);
+    final HyperLogLog second = new HyperLogLog(10);
+    for (int i = 0; i < 1000; i++) {
+      first.add(i);
+      second.add(i + 500);
+    }
+    assertThat((double) first.merge(second).estimate()).isCloseTo(1500, within(100.0));
+  }
+
+  @Test
+  public void testMergeDifferentPrecisions() {
+    final HyperLogLog first = new HyperLogLog(12);
+    final HyperLogLog second = new HyperLogLog(10);
+    for (int i = 0; i < 1000; i++) {
+      first.add(i);
+      second.add(i + 500);
+    }
+    final HyperLogLog merged = first.merge(second);
+    assertThat(merged.precision()).isEqualTo(10);
+    assertThat(second.merge(first).estimate()).isEqualTo(merged.estimate());
+    assertThat((double) merged.estimate()).isCloseTo(1500, within(150.0));
+  }
+
+  @Test
+  public void testFoldMatchesLowerPrecision() {
+    final HyperLogLog high = new HyperLogLog(14);
+    final HyperLogLog low = new HyperLogLog(9);
+    for (int i = 0; i < 20_000; i++) {
+      high.add("word" + i);
+      low.add("word" + i);
+    }
+    assertThat(high.fold(9).toBytes()).isEqualTo(low.toBytes());
+  }
+
+  @Test
+  public void testFoldToHigherPrecision() {
+    assertThatThrownBy(() -> new HyperLogLog(10).fold(11))
+            .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testSparseSerialization() {
+    final HyperLogLog counter = new HyperLogLog(12);
+    counter.add(42L);
+    final byte[] data = counter.toBytes();
+    assertThat(data.length).isLessThan(16);
+    assertThat(HyperLogLog.fromBytes(data).estimate()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDenseSerialization() {
+    final HyperLogLog counter = new HyperLogLog(8);
+    for (int i = 0; i < 10_000; i++) {
+      counter.add(i);
+    }
+    final HyperLogLog restored = HyperLogLog.fromBytes(counter.toBytes());
+    assertThat(restored.precision()).isEqualTo(8);
+    assertThat(restored.estimate()).isEqualTo(counter.estimate());
+  }
+
+}
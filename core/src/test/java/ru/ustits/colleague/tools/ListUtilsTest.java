@@ -33,4 +33,19 @@ public class ListUtilsTest {
     assertThat(ListUtils.count(emptyList())).isEmpty();
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testCountNulls() {
+    assertThat(ListUtils.count(asList("a", null, "a", null)))
+            .containsEntry("a", 2)
+            .containsEntry(null, 2)
+            .hasSize(2);
+  }
+
+  @Test
+  public void testCounts() {
+    final ObjectIntMap<String> counts = ListUtils.counts(asList("a", "b", "a"));
+    assertThat(counts.get("a")).isEqualTo(2);
+    assertThat(counts.get("b")).isEqualTo(1);
+  }
+
+}
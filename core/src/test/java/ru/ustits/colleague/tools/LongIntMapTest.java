@@ -0,0 +1,60 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class LongIntMapTest {
+
+  @Test
+  public void testIncrement() {
+    final LongIntMap map = new LongIntMap();
+    assertThat(map.increment(42L)).isEqualTo(1);
+    assertThat(map.increment(42L)).isEqualTo(2);
+    assertThat(map.add(-7L, 3)).isEqualTo(3);
+    assertThat(map.get(42L)).isEqualTo(2);
+    assertThat(map.get(1L)).isZero();
+    assertThat(map.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testZeroKey() {
+    final LongIntMap map = new LongIntMap();
+    assertThat(map.get(0L)).isZero();
+    map.increment(0L);
+    map.increment(0L);
+    assertThat(map.get(0L)).isEqualTo(2);
+    assertThat(map.size()).isEqualTo(1);
+    final Map<Long, Integer> entries = new HashMap<>();
+    map.forEach(entries::put);
+    assertThat(entries).containsOnly(new HashMap.SimpleEntry<>(0L, 2));
+  }
+
+  @Test
+  public void testResize() {
+    final LongIntMap map = new LongIntMap(2);
+    for (long i = 1; i <= 1000; i++) {
+      map.add(i * 1_000_000_007L, (int) i);
+    }
+    assertThat(map.size()).isEqualTo(1000);
+    for (long i = 1; i <= 1000; i++) {
+      assertThat(map.get(i * 1_000_000_007L)).isEqualTo((int) i);
+    }
+  }
+
+  @Test
+  public void testTop() {
+    final LongIntMap map = new LongIntMap();
+    for (long i = 1; i <= 10; i++) {
+      map.add(i, (int) i);
+    }
+    assertThat(map.top(3).keySet()).containsExactly(10L, 9L, 8L);
+  }
+
+}
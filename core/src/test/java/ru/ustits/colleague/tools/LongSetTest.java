@@ -0,0 +1,67 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class LongSetTest {
+
+  @Test
+  public void testContains() {
+    final LongSet set = LongSet.of(1L, -5L, 1L, Long.MAX_VALUE);
+    assertThat(set.size()).isEqualTo(3);
+    assertThat(set.contains(1L)).isTrue();
+    assertThat(set.contains(-5L)).isTrue();
+    assertThat(set.contains(Long.MAX_VALUE)).isTrue();
+    assertThat(set.contains(2L)).isFalse();
+    assertThat(set.contains(0L)).isFalse();
+  }
+
+  @Test
+  public void testZeroAndNulls() {
+    final LongSet set = LongSet.of(Arrays.asList(0L, null, 3L));
+    assertThat(set.size()).isEqualTo(2);
+    assertThat(set.contains(0L)).isTrue();
+    assertThat(set.without(0L).contains(0L)).isFalse();
+    assertThat(set.without(0L).size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testCopyOnWrite() {
+    final LongSet empty = LongSet.EMPTY;
+    final LongSet one = empty.with(7L);
+    assertThat(empty.contains(7L)).isFalse();
+    assertThat(one.contains(7L)).isTrue();
+    assertThat(one.with(7L)).isSameAs(one);
+    assertThat(one.without(8L)).isSameAs(one);
+    final LongSet none = one.without(7L);
+    assertThat(none.isEmpty()).isTrue();
+    assertThat(one.contains(7L)).isTrue();
+  }
+
+  @Test
+  public void testGrowAndShrink() {
+    LongSet set = LongSet.EMPTY;
+    for (long i = 1; i <= 1000; i++) {
+      set = set.with(i * 1_000_000_007L);
+    }
+    for (long i = 1; i <= 1000; i += 2) {
+      set = set.without(i * 1_000_000_007L);
+    }
+    assertThat(set.size()).isEqualTo(500);
+    for (long i = 1; i <= 1000; i++) {
+      assertThat(set.contains(i * 1_000_000_007L)).isEqualTo(i % 2 == 0);
+    }
+    final Set<Long> values = new HashSet<>();
+    set.forEach(values::add);
+    assertThat(values).hasSize(500);
+  }
+
+}
@@ -40,4 +40,20 @@ public class MapUtilsTest {
     assertThat(MapUtils.limit(emptyMap(), TEST_STATS_LEN)).isEmpty();
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testTop() {
+    final Map<String, Integer> data = new HashMap<>();
+    data.put("a", 1);
+    data.put("b", 4);
+    data.put("c", 3);
+    data.put("d", 2);
+    assertThat(MapUtils.top(data, 2)).containsOnlyKeys("b", "c");
+    assertThat(MapUtils.top(data, 2).keySet()).containsExactly("b", "c");
+  }
+
+  @Test
+  public void testTopWithEmptyMap() {
+    assertThat(MapUtils.top(emptyMap(), TEST_STATS_LEN)).isEmpty();
+  }
+
+}
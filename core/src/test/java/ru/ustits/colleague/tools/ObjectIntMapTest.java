@@ -0,0 +1,59 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author ustits
+ */
+public class ObjectIntMapTest {
+
+  @Test
+  public void testIncrement() {
+    final ObjectIntMap<String> map = new ObjectIntMap<>();
+    assertThat(map.increment("a")).isEqualTo(1);
+    assertThat(map.increment("a")).isEqualTo(2);
+    assertThat(map.add("b", 5)).isEqualTo(5);
+    assertThat(map.get("a")).isEqualTo(2);
+    assertThat(map.get("c")).isZero();
+    assertThat(map.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testResize() {
+    final ObjectIntMap<Integer> map = new ObjectIntMap<>(2);
+    for (int i = 0; i < 1000; i++) {
+      map.add(i, i);
+    }
+    assertThat(map.size()).isEqualTo(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(map.get(i)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void testTop() {
+    final ObjectIntMap<String> map = new ObjectIntMap<>();
+    map.add("a", 1);
+    map.add("b", 3);
+    map.add("c", 2);
+    final Map<String, Integer> top = map.top(2);
+    assertThat(top).containsExactly(entry("b", 3), entry("c", 2));
+  }
+
+  @Test
+  public void testNullKey() {
+    assertThatThrownBy(() -> new ObjectIntMap<String>().increment(null))
+            .isInstanceOf(NullPointerException.class);
+  }
+
+  private static Map.Entry<String, Integer> entry(final String key, final Integer value) {
+    return new AbstractMap.SimpleEntry<>(key, value);
+  }
+
+}
@@ -0,0 +1,89 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author ustits
+ */
+public class SpaceSavingTest {
+
+  @Test
+  public void testExactBelowCapacity() {
+    final SpaceSaving summary = new SpaceSaving(10);
+    summary.add("a");
+    summary.add("b");
+    summary.add("a");
+    summary.add("c", 5);
+    assertThat(summary.top(2)).containsExactly(
+            new SpaceSaving.Entry("c", 5, 0),
+            new SpaceSaving.Entry("a", 2, 0));
+    assertThat(summary.min()).isZero();
+  }
+
+  @Test
+  public void testFindsHeavyHitters() {
+    final SpaceSaving summary = new SpaceSaving(10);
+    long total = 0;
+    for (int i = 0; i < 10_000; i++) {
+      summary.add("noise" + i);
+      summary.add(i % 2 == 0 ? "heavy" : "medium" + i % 3);
+      total += 2;
+    }
+    final List<SpaceSaving.Entry> top = summary.top(2);
+    assertThat(top.get(0).getKey()).isEqualTo("heavy");
+    for (final SpaceSaving.Entry entry : top) {
+      assertThat(entry.getError()).isLessThanOrEqualTo(total / summary.capacity());
+    }
+    assertThat(top.get(0).getCount() - top.get(0).getError()).isLessThanOrEqualTo(5_000);
+    assertThat(top.get(0).getCount()).isGreaterThanOrEqualTo(5_000);
+  }
+
+  @Test
+  public void testMerge() {
+    final SpaceSaving first = new SpaceSaving(3);
+    first.add("a", 10);
+    first.add("b", 5);
+    final SpaceSaving second = new SpaceSaving(3);
+    second.add("a", 1);
+    second.add("c", 7);
+    final SpaceSaving merged = first.merge(second);
+    assertThat(merged.top(3)).containsExactly(
+            new SpaceSaving.Entry("a", 11, 0),
+            new SpaceSaving.Entry("c", 7, 0),
+            new SpaceSaving.Entry("b", 5, 0));
+  }
+
+  @Test
+  public void testMergeFullSummariesAddsMinToError() {
+    final SpaceSaving first = new SpaceSaving(1);
+    first.add("a", 3);
+    final SpaceSaving second = new SpaceSaving(1);
+    second.add("b", 2);
+    assertThat(first.merge(second).top(1)).containsExactly(new SpaceSaving.Entry("a", 5, 2));
+  }
+
+  @Test
+  public void testSerialization() {
+    final SpaceSaving summary = new SpaceSaving(4);
+    for (int i = 0; i < 20; i++) {
+      summary.add("слово" + i % 6, i);
+    }
+    final SpaceSaving restored = SpaceSaving.fromBytes(summary.toBytes());
+    assertThat(restored.capacity()).isEqualTo(4);
+    assertThat(restored.top(4)).isEqualTo(summary.top(4));
+    restored.add("слово0", 100);
+    assertThat(restored.top(1).get(0).getKey()).isEqualTo("слово0");
+  }
+
+  @Test
+  public void testUnknownVersion() {
+    assertThatThrownBy(() -> SpaceSaving.fromBytes(new byte[]{42}))
+            .isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
@@ -0,0 +1,39 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class StopWordsTest {
+
+  @Test
+  public void testContains() {
+    final StopWords words = StopWords.of("и", "The", "ещё");
+    assertThat(words.size()).isEqualTo(3);
+    assertThat(words.contains("и")).isTrue();
+    assertThat(words.contains("the")).isTrue();
+    assertThat(words.contains("еще")).isTrue();
+    assertThat(words.contains("то")).isFalse();
+  }
+
+  @Test
+  public void testContainsBufferPrefix() {
+    final StopWords words = StopWords.of("on");
+    assertThat(words.contains("one".toCharArray(), 2)).isTrue();
+    assertThat(words.contains("one".toCharArray(), 3)).isFalse();
+  }
+
+  @Test
+  public void testDuplicates() {
+    assertThat(StopWords.of("a", "A", "a").size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testEmpty() {
+    assertThat(StopWords.EMPTY.contains("a")).isFalse();
+  }
+
+}
@@ -0,0 +1,62 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class ThreadsTest {
+
+  @Test
+  public void testPlatformFactory() {
+    final Thread thread = Threads.factory("worker", false).newThread(() -> {
+    });
+    assertThat(thread.getName()).isEqualTo("worker-0");
+    assertThat(thread.isDaemon()).isTrue();
+  }
+
+  @Test
+  public void testExecutorRunsTasks() throws InterruptedException {
+    final ExecutorService executor = Threads.executor("worker", true, 2, 10);
+    try {
+      final CountDownLatch done = new CountDownLatch(20);
+      for (int i = 0; i < 20; i++) {
+        executor.execute(done::countDown);
+      }
+      assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testFullPoolRunsInCaller() throws InterruptedException {
+    final ExecutorService executor = Threads.executor("worker", false, 1, 1);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    try {
+      executor.execute(() -> {
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      executor.execute(() -> {
+      });
+      final AtomicReference<Thread> runner = new AtomicReference<>();
+      executor.execute(() -> runner.set(Thread.currentThread()));
+      assertThat(runner.get()).isSameAs(Thread.currentThread());
+    } finally {
+      blocked.countDown();
+      executor.shutdown();
+    }
+  }
+
+}
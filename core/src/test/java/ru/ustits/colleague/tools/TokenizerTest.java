@@ -0,0 +1,56 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class TokenizerTest {
+
+  private Tokenizer tokenizer;
+
+  @Before
+  public void setUp() {
+    tokenizer = new Tokenizer();
+  }
+
+  @Test
+  public void testSplitsOnPunctuation() {
+    assertThat(tokenizer.tokens("Hello, world!  It's 2018...")).containsExactly("hello", "world", "it", "s", "2018");
+  }
+
+  @Test
+  public void testLowercasesCyrillic() {
+    assertThat(tokenizer.tokens("Привет, МИР")).containsExactly("привет", "мир");
+  }
+
+  @Test
+  public void testFoldsYo() {
+    assertThat(tokenizer.tokens("Ёлка ещё")).containsExactly("елка", "еще");
+  }
+
+  @Test
+  public void testKeepsSupplementaryLetters() {
+    assertThat(tokenizer.tokens("a𝐀b c")).containsExactly("a𝐀b", "c");
+  }
+
+  @Test
+  public void testGrowsBuffer() {
+    final StringBuilder word = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      word.append('x');
+    }
+    assertThat(tokenizer.tokens(word + " y")).containsExactly(word.toString(), "y");
+  }
+
+  @Test
+  public void testEmpty() {
+    assertThat(tokenizer.tokenize(" ,. ", (word, length) -> {
+      throw new AssertionError();
+    })).isZero();
+  }
+
+}
@@ -0,0 +1,54 @@
+package ru.ustits.colleague.tools;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class TopNTest {
+
+  @Test
+  public void testKeepsLargest() {
+    final List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      values.add(i);
+    }
+    Collections.shuffle(values, new Random(42));
+    final TopN<Integer> top = new TopN<>(5);
+    values.forEach(value -> top.offer(value, value));
+    assertThat(top.items()).containsExactly(999, 998, 997, 996, 995);
+  }
+
+  @Test
+  public void testFewerItemsThanLimit() {
+    final TopN<String> top = new TopN<>(5);
+    top.offer("a", 1);
+    top.offer("b", 2);
+    assertThat(top.size()).isEqualTo(2);
+    assertThat(top.items()).containsExactly("b", "a");
+  }
+
+  @Test
+  public void testEqualScoreDoesNotDisplace() {
+    final TopN<String> top = new TopN<>(1);
+    assertThat(top.offer("a", 1)).isTrue();
+    assertThat(top.accepts(1)).isFalse();
+    assertThat(top.offer("b", 1)).isFalse();
+    assertThat(top.items()).containsExactly("a");
+  }
+
+  @Test
+  public void testZeroLimit() {
+    final TopN<String> top = new TopN<>(0);
+    assertThat(top.offer("a", 1)).isFalse();
+    assertThat(top.items()).isEmpty();
+  }
+
+}
@@ -0,0 +1,76 @@
+package ru.ustits.colleague.triggers;
+
+import org.junit.Test;
+import ru.ustits.colleague.repositories.records.TriggerRecord;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class ResponseStrategiesTest {
+
+  private final TriggerRecord first = new TriggerRecord("a", "1");
+  private final TriggerRecord second = new TriggerRecord("b", "2");
+  private final TriggerRecord third = new TriggerRecord("c", "3");
+  private final List<TriggerRecord> matches = Arrays.asList(first, second, third);
+
+  @Test
+  public void testAll() {
+    assertThat(parse("all").select(matches)).containsExactly(first, second, third);
+  }
+
+  @Test
+  public void testNothing() {
+    assertThat(parse("nothing").select(matches)).isEmpty();
+  }
+
+  @Test
+  public void testFirstAndLast() {
+    assertThat(parse("first").select(matches)).containsExactly(first);
+    assertThat(parse("last").select(matches)).containsExactly(third);
+    assertThat(parse("last").select(Collections.emptyList())).isEmpty();
+  }
+
+  @Test
+  public void testRandom() {
+    final ResponseStrategy random = new ResponseStrategies.Random(bound -> bound - 2);
+    assertThat(random.select(matches)).containsExactly(second);
+    assertThat(parse("random").select(matches)).hasSize(1);
+  }
+
+  @Test
+  public void testPeriodic() {
+    final ResponseStrategy hit = new ResponseStrategies.Periodic(30, bound -> bound == 100 ? 29 : 0);
+    assertThat(hit.select(matches)).containsExactly(first);
+    final ResponseStrategy miss = new ResponseStrategies.Periodic(30, bound -> bound == 100 ? 30 : 0);
+    assertThat(miss.select(matches)).isEmpty();
+  }
+
+  @Test
+  public void testParsePeriodicChance() {
+    assertThat(parse("periodic 30").state()).isEqualTo("periodic 30");
+    assertThat(parse("periodic").state()).isEqualTo("periodic " + ResponseStrategies.DEFAULT_CHANCE);
+    assertThat(ResponseStrategies.parse("periodic 101")).isEmpty();
+    assertThat(ResponseStrategies.parse("periodic often")).isEmpty();
+  }
+
+  @Test
+  public void testParseUnknown() {
+    assertThat(ResponseStrategies.parse("sometimes")).isEmpty();
+    assertThat(ResponseStrategies.parse("")).isEmpty();
+    assertThat(ResponseStrategies.parse(null)).isEmpty();
+  }
+
+  private static ResponseStrategy parse(final String state) {
+    final Optional<ResponseStrategy> strategy = ResponseStrategies.parse(state);
+    assertThat(strategy).isPresent();
+    return strategy.get();
+  }
+
+}
@@ -0,0 +1,97 @@
+package ru.ustits.colleague.triggers;
+
+import org.junit.Test;
+import ru.ustits.colleague.repositories.records.TriggerRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author ustits
+ */
+public class TriggerMatcherTest {
+
+  @Test
+  public void testMatchesOverlappingTriggers() {
+    final TriggerRecord he = trigger("he");
+    final TriggerRecord she = trigger("she");
+    final TriggerRecord his = trigger("his");
+    final TriggerRecord hers = trigger("hers");
+    final TriggerMatcher matcher = new TriggerMatcher(Arrays.asList(he, she, his, hers));
+    assertThat(matcher.match("ushers")).containsExactly(she, he, hers);
+  }
+
+  @Test
+  public void testIgnoresCase() {
+    final TriggerRecord hello = trigger("Привет");
+    final TriggerMatcher matcher = new TriggerMatcher(Collections.singletonList(hello));
+    assertThat(matcher.match("всем ПРИВЕТ")).containsExactly(hello);
+  }
+
+  @Test
+  public void testOrdersByFirstOccurrence() {
+    final TriggerRecord cat = trigger("cat");
+    final TriggerRecord dog = trigger("dog");
+    final TriggerMatcher matcher = new TriggerMatcher(Arrays.asList(cat, dog));
+    assertThat(matcher.match("dog and cat and dog")).containsExactly(dog, cat);
+  }
+
+  @Test
+  public void testReturnsDuplicateTriggersOnce() {
+    final TriggerRecord first = new TriggerRecord(1, "hi", "one", 1L, 1L);
+    final TriggerRecord second = new TriggerRecord(2, "hi", "two", 1L, 1L);
+    final TriggerMatcher matcher = new TriggerMatcher(Arrays.asList(first, second));
+    assertThat(matcher.match("hi hi")).containsExactly(first, second);
+  }
+
+  @Test
+  public void testSkipsEmptyTriggers() {
+    final TriggerMatcher matcher = new TriggerMatcher(Arrays.asList(trigger(""), trigger(null)));
+    assertThat(matcher.size()).isZero();
+    assertThat(matcher.match("anything")).isEmpty();
+  }
+
+  @Test
+  public void testNoMatches() {
+    assertThat(TriggerMatcher.EMPTY.match("text")).isEmpty();
+    assertThat(new TriggerMatcher(Collections.singletonList(trigger("abc"))).match("abxabd")).isEmpty();
+    assertThat(new TriggerMatcher(Collections.singletonList(trigger("abc"))).match(null)).isEmpty();
+  }
+
+  @Test
+  public void testAgreesWithNaiveMatching() {
+    final Random random = new Random(7);
+    final List<TriggerRecord> triggers = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      triggers.add(new TriggerRecord(i, word(random, 1 + random.nextInt(4)), null, 1L, 1L));
+    }
+    final TriggerMatcher matcher = new TriggerMatcher(triggers);
+    for (int i = 0; i < 100; i++) {
+      final String text = word(random, random.nextInt(40));
+      final List<TriggerRecord> expected = new ArrayList<>();
+      triggers.stream()
+              .filter(trigger -> text.contains(trigger.getTrigger()))
+              .sorted((a, b) -> Integer.compare(text.indexOf(a.getTrigger()), text.indexOf(b.getTrigger())))
+              .forEach(expected::add);
+      assertThat(matcher.match(text)).containsOnlyElementsOf(expected).hasSameSizeAs(expected);
+    }
+  }
+
+  private static String word(final Random random, final int length) {
+    final StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      builder.append((char) ('a' + random.nextInt(3)));
+    }
+    return builder.toString();
+  }
+
+  private static TriggerRecord trigger(final String trigger) {
+    return new TriggerRecord(trigger, "message");
+  }
+
+}
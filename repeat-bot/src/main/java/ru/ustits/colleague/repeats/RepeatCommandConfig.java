@@ -15,6 +15,9 @@ import ru.ustits.colleague.repeats.commands.*;
 import ru.ustits.colleague.repeats.services.RepeatService;
 import ru.ustits.colleague.repeats.tasks.RepeatScheduler;
 import ru.ustits.colleague.repositories.records.RepeatRecord;
+import ru.ustits.colleague.tools.Threads;
+
+import java.util.concurrent.ExecutorService;
 
 /**
  * @author ustits
@@ -32,10 +35,18 @@ class RepeatCommandConfig extends AppConfig {
   private static final String ADMIN_REPEAT_WEEKENDS_COMMAND = ADMIN_PREFIX + REPEAT_WEEKENDS_COMMAND;
 
   @Bean
-  public RepeatScheduler scheduler() throws SchedulerException {
+  public RepeatScheduler scheduler(final ExecutorService repeatExecutor) throws SchedulerException {
     final Scheduler scheduler = StdSchedulerFactory.getDefaultScheduler();
     scheduler.start();
-    return new RepeatScheduler(scheduler);
+    return new RepeatScheduler(scheduler, repeatExecutor);
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService repeatExecutor() {
+    return Threads.executor("repeat-sender",
+            env.getProperty("threads.virtual", Boolean.class, false),
+            env.getProperty("repeats.pool.size", Integer.class, 8),
+            env.getProperty("repeats.pool.capacity", Integer.class, 1_000));
   }
 
   @Bean
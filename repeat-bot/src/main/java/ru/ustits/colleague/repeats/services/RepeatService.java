@@ -6,16 +6,13 @@ import org.telegram.telegrambots.api.objects.Chat;
 import org.telegram.telegrambots.api.objects.User;
 import ru.ustits.colleague.repositories.ChatsRepository;
 import ru.ustits.colleague.repositories.RepeatRepository;
-import ru.ustits.colleague.repositories.UserRepository;
 import ru.ustits.colleague.repositories.records.ChatRecord;
 import ru.ustits.colleague.repositories.records.RepeatRecord;
-import ru.ustits.colleague.repositories.records.UserRecord;
+import ru.ustits.colleague.services.RegistrationService;
 
 import java.util.ArrayList;
 import java.util.List;
 
-import static java.lang.Integer.toUnsignedLong;
-
 /**
  * @author ustits
  */
@@ -25,36 +22,18 @@ public class RepeatService {
 
   private final RepeatRepository repeatRepository;
   private final ChatsRepository chatsRepository;
-  private final UserRepository userRepository;
+  private final RegistrationService registrationService;
 
   public RepeatRecord addRepeat(final RepeatRecord record, final Chat chat, final User user) {
-    final Long chatId = chat.getId();
-    final ChatRecord chatRecord = new ChatRecord(chatId, chat.getTitle());
-    if (!chatsRepository.existsById(chatId)) {
-      chatsRepository.save(chatRecord);
-    }
-    final Long userId = toUnsignedLong(user.getId());
-    final UserRecord userRecord = new UserRecord(userId, user.getFirstName(),
-            user.getLastName(), user.getUserName());
-    if (!userRepository.existsById(userId)) {
-      userRepository.save(userRecord);
-    }
+    registrationService.register(chat);
+    registrationService.register(user);
     return repeatRepository.save(record);
   }
 
   public RepeatRecord addRepeat(final String message, final String cron, final Chat chat, final User user) {
-    final Long chatId = chat.getId();
-    final ChatRecord chatRecord = new ChatRecord(chatId, chat.getTitle());
-    if (!chatsRepository.existsById(chatId)) {
-      chatsRepository.save(chatRecord);
-    }
-    final Long userId = toUnsignedLong(user.getId());
-    final UserRecord userRecord = new UserRecord(userId,
-            user.getFirstName(), user.getLastName(), user.getUserName());
-    if (!userRepository.existsById(userId)) {
-      userRepository.save(userRecord);
-    }
-    final RepeatRecord record = new RepeatRecord(message, cron, chat.getId(), toUnsignedLong(user.getId()));
+    final Long chatId = registrationService.register(chat);
+    final Long userId = registrationService.register(user);
+    final RepeatRecord record = new RepeatRecord(message, cron, chatId, userId);
     return repeatRepository.save(record);
   }
 
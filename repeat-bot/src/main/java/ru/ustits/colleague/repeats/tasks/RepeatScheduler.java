@@ -1,7 +1,6 @@
 package ru.ustits.colleague.repeats.tasks;
 
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.quartz.*;
 import org.telegram.telegrambots.bots.AbsSender;
@@ -11,6 +10,7 @@ import ru.ustits.colleague.repositories.records.RepeatRecord;
 import java.text.ParseException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import static org.quartz.CronExpression.isValidExpression;
 import static org.quartz.CronScheduleBuilder.cronSchedule;
@@ -21,14 +21,28 @@ import static org.quartz.TriggerBuilder.newTrigger;
  * @author ustits
  */
 @Log4j2
-@RequiredArgsConstructor
 public class RepeatScheduler {
 
   static final String SENDER_KEY = "sender";
   static final String MESSAGE_KEY = "message";
   static final String CHAT_KEY = "chat";
+  static final String EXECUTOR_KEY = "executor";
 
   private final Scheduler scheduler;
+  private final Executor executor;
+
+  public RepeatScheduler(final Scheduler scheduler) {
+    this(scheduler, Runnable::run);
+  }
+
+  /**
+   * @param executor sends repeat messages, so a slow Telegram call does not
+   *                 hold a Quartz worker thread
+   */
+  public RepeatScheduler(final Scheduler scheduler, final Executor executor) {
+    this.scheduler = scheduler;
+    this.executor = executor;
+  }
 
   public void scheduleTasks(final List<RepeatRecord> repeatRecords, @NonNull final AbsSender sender) {
     repeatRecords.forEach(record -> scheduleTask(record, sender));
@@ -69,6 +83,7 @@ public class RepeatScheduler {
     data.put(SENDER_KEY, sender);
     data.put(MESSAGE_KEY, text);
     data.put(CHAT_KEY, chatId);
+    data.put(EXECUTOR_KEY, executor);
     return newJob(RepeatTask.class)
             .usingJobData(data)
             .build();
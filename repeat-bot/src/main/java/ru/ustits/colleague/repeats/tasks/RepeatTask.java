@@ -8,6 +8,9 @@ import org.quartz.JobExecutionException;
 import org.telegram.telegrambots.api.methods.send.SendMessage;
 import org.telegram.telegrambots.bots.AbsSender;
 import org.telegram.telegrambots.exceptions.TelegramApiException;
+import ru.ustits.colleague.ColleagueBot;
+
+import java.util.concurrent.Executor;
 
 /**
  * @author ustits
@@ -21,11 +24,26 @@ public class RepeatTask implements Job {
     final AbsSender sender = (AbsSender) data.get(RepeatScheduler.SENDER_KEY);
     final String message = data.getString(RepeatScheduler.MESSAGE_KEY);
     final Long chatId = data.getLong(RepeatScheduler.CHAT_KEY);
+    final Executor executor = (Executor) data.get(RepeatScheduler.EXECUTOR_KEY);
+    if (executor == null) {
+      send(sender, message, chatId);
+    } else {
+      executor.execute(() -> send(sender, message, chatId));
+    }
+  }
+
+  private void send(final AbsSender sender, final String message, final Long chatId) {
     try {
-      sender.execute(new SendMessage(chatId, message));
+      final SendMessage send = new SendMessage(chatId, message);
+      if (sender instanceof ColleagueBot) {
+        ((ColleagueBot) sender).enqueue(send);
+      } else {
+        sender.execute(send);
+      }
       log.info("Repeated: {} in chat: {}", message, chatId);
     } catch (TelegramApiException e) {
       log.error("Unable to send repeat message", e);
     }
   }
+
 }
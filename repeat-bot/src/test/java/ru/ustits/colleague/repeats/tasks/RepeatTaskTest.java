@@ -0,0 +1,53 @@
+package ru.ustits.colleague.repeats.tasks;
+
+import org.junit.Test;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+import org.telegram.telegrambots.bots.AbsSender;
+import ru.ustits.colleague.ColleagueBot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author ustits
+ */
+public class RepeatTaskTest {
+
+  @Test
+  public void testSendsThroughExecutor() throws Exception {
+    final List<Runnable> tasks = new ArrayList<>();
+    final RepeatScheduler scheduler = new RepeatScheduler(mock(Scheduler.class), tasks::add);
+    final AbsSender sender = mock(AbsSender.class);
+    final JobDetail job = scheduler.buildJob("text", 1L, sender);
+    final JobExecutionContext context = mock(JobExecutionContext.class);
+    when(context.getJobDetail()).thenReturn(job);
+
+    new RepeatTask().execute(context);
+    verify(sender, never()).execute(any(SendMessage.class));
+    assertThat(tasks).hasSize(1);
+
+    tasks.get(0).run();
+    verify(sender).execute(any(SendMessage.class));
+  }
+
+  @Test
+  public void testQueuesThroughBot() throws Exception {
+    final RepeatScheduler scheduler = new RepeatScheduler(mock(Scheduler.class));
+    final ColleagueBot bot = mock(ColleagueBot.class);
+    final JobDetail job = scheduler.buildJob("text", 1L, bot);
+    final JobExecutionContext context = mock(JobExecutionContext.class);
+    when(context.getJobDetail()).thenReturn(job);
+
+    new RepeatTask().execute(context);
+    verify(bot).enqueue(any(SendMessage.class));
+    verify(bot, never()).execute(any(SendMessage.class));
+  }
+
+}